@@ -1,7 +1,5 @@
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
 
 // Modularisierungseinheit: Klasse
 // Daten werden von Ants gekapselt und nur notwendige Daten sind von außen sichtbar. (Data-Hiding)
@@ -10,50 +8,52 @@ import java.util.LinkedList;
 // Ant holds the logic of the different states.
 // It handles the process of finding the next tiles.
 // It implements the Entity since it needs a position.
+// The state of an ant is stored in a slot of the AntTable of its Grid, an Ant object is only a handle onto it.
+// The logic works on the slot, so the Grid can update all ants by iterating the table.
 public class Ant implements Entity {
 
-    // reference to grid on which the ant lives
-    private final Grid grid;
-
-    // reference to belonging nest
-    private final Nest nest;
+    // size of the state written by writeState
+    public static final int STATE_BYTES = 6 * Integer.BYTES + 2 + 2 * Integer.BYTES + Long.BYTES;
 
     // biases for different behaviours of the ant
-    private final int stinkBias;
-    private final int directionBias;
-    private final int targetBias;
-
-    // Current position of ant
-    private Vector position;
-
-    // specifies the target ant
-    private Tile target;
-
-    // both modifiedBias and neighbours are fixed arrays for each ant to increase performance
-    private final int[] modifiedBias;
+    private static final int STINK_BIAS = 10;
+    private static final int DIRECTION_BIAS = 15;
+    private static final int TARGET_BIAS = 5;
 
-    //direction vectors
-    private final Vector[] lookDirection;
-    private final Tile[] availableNeighbours;
+    // table which holds the state of this ant
+    private final AntTable table;
 
-    // lifetime for each ant - maybe i
-    private int lifetime;
-    private int totalLifetime;
-    private int currentLifetime; // specifies how long an ant goes on explore mode
+    // reference to belonging nest
+    private final Nest nest;
 
+    // slot of this ant in the table, -1 while the ant is dead
+    private int slot;
 
-    // current state of ant
-    private State state;
+    // position of this ant in the list of its nest, -1 while the ant is dead
+    private int populationSlot = -1;
 
     // BAD: objektorientierte Programmierung:
     // Dynamisches Binden für verbesserte Wartbarkeit: z.B. in der Methode update wird basierend vom aktuellen Zustand eine andere Aktion ausgeführt
     // Das könnte man durch dynamisches Binden verbessern.
     // Mögliche Verbesserung: Ein eigenes Interface erstellen und für jeden der Zustände eine Klasse, die das Interface implementiert.
-    private enum State {
-        EXPLORE,
-        SCAVENGE,
-        COLLECT,
-        RETURN
+    // states of an ant, stored as byte in the table
+    private static final byte EXPLORE = 0;
+    private static final byte SCAVENGE = 1;
+    private static final byte COLLECT = 2;
+    private static final byte RETURN = 3;
+
+    // stands for every cell without a Tile, it is not stored anywhere and has no scent
+    // the update only reads the world, so it does not create Tiles for the cells an ant looks at
+    private static final Tile EMPTY_CELL = new Tile(new Vector(0, 0));
+
+    // arrays which are needed during the update of an ant, one per thread instead of one per ant
+    static final class Scratch {
+        // the neighbours are stored in the order of Heading.LOOK
+        private final Tile[] availableNeighbours = new Tile[Heading.LOOK.length];
+        // heading the neighbours were looked up with, doThing might turn the ant afterwards
+        private int neighbourHeading;
+        private final int[] modifiedBias = new int[Heading.LOOK.length];
+        private final RandomStream random = new RandomStream(0);
     }
 
     /**
@@ -62,55 +62,138 @@ public class Ant implements Entity {
      *
      * @param grid     Reference to grid. Grid != null
      * @param nest     Reference to nest. Nest != null
-     * @param lifetime Lifetime of ant. Must be greather than 0.
+     * @param lifetime Lifetime of ant, the ant draws its own lifetime. Must be greather than 0.
      * @param position Position of ant. Position != null
+     * @param random   Random stream of the ant. Random != null
      */
-    public Ant(Grid grid, Nest nest, int lifetime, Vector position) {
-        this.grid = grid;
+    public Ant(Grid grid, Nest nest, int lifetime, Vector position, RandomStream random) {
+        this.table = grid.getAntTable();
         this.nest = nest;
-        this.lifetime = lifetime;
-        this.position = position;
-        this.state = State.EXPLORE;
-
-        //calculate
-        Vector direction = Vector.RandomDirection();
-        this.lookDirection = new Vector[5];
-        this.availableNeighbours = new Tile[5];
-        this.modifiedBias = new int[5];
-
-        Vector left = Vector.orthogonalVector(direction, true);
-        Vector leftFront = Vector.sharpVector(direction, left);
-        Vector right = Vector.orthogonalVector(direction, false);
-        Vector rightFront = Vector.sharpVector(direction, left);
-        this.lookDirection[0] = left;
-        this.lookDirection[1] = leftFront;
-        this.lookDirection[2] = direction;
-        this.lookDirection[3] = right;
-        this.lookDirection[4] = rightFront;
-
-        this.stinkBias = 10;
-        this.directionBias = 15;
-        this.targetBias = 5;
-        this.lifetime = 100 + (int) (Math.random() * 50);
-        this.currentLifetime = this.lifetime;
-        this.totalLifetime = currentLifetime * (int) (Math.random() * 5 + 5);
+        this.slot = table.born(this, nest.getIndex(), position.getX(), position.getY(), random.getState());
     }
 
     /**
-     * Handles the update process for an Ant.
-     * Acts based on biases and on different Ant states.
+     * Restores an Ant from the state written by writeState.
+     *
+     * @param grid  Reference to grid. Grid != null
+     * @param nest  Reference to nest. Nest != null
+     * @param state Buffer positioned at the state, at least STATE_BYTES have to remain
+     */
+    public Ant(Grid grid, Nest nest, ByteBuffer state) {
+        this.table = grid.getAntTable();
+        this.nest = nest;
+        this.slot = table.add(this);
+        AntTable t = table;
+        t.nest[slot] = nest.getIndex();
+        t.x[slot] = state.getInt();
+        t.y[slot] = state.getInt();
+        t.heading[slot] = state.getInt();
+        t.lifetime[slot] = state.getInt();
+        t.totalLifetime[slot] = state.getInt();
+        t.currentLifetime[slot] = state.getInt();
+        t.state[slot] = state.get();
+        t.targetKind[slot] = state.get();
+        t.targetX[slot] = state.getInt();
+        t.targetY[slot] = state.getInt();
+        t.random[slot] = state.getLong();
+    }
+
+    /**
+     * Writes everything that is needed to continue this Ant later.
+     * Must not be called during an update.
+     *
+     * @param state Buffer with at least STATE_BYTES remaining
+     */
+    public void writeState(ByteBuffer state) {
+        AntTable t = table;
+        state.putInt(t.x[slot]).putInt(t.y[slot]);
+        state.putInt(t.heading[slot]).putInt(t.lifetime[slot]).putInt(t.totalLifetime[slot]).putInt(t.currentLifetime[slot]);
+        state.put(t.state[slot]);
+        state.put(t.targetKind[slot]).putInt(t.targetX[slot]).putInt(t.targetY[slot]);
+        state.putLong(t.random[slot]);
+    }
+
+    /**
+     * Handles the update process for this Ant alone, see update(AntTable, int, Scratch).
      *
      * @return always true, because in each step an Ant makes definitely a move to another tile.
      */
     @Override
     public boolean update() {
+        update(table, slot, new Scratch());
+        return true;
+    }
+
+    /**
+     * Handles the update process for the Ant in a slot.
+     * Acts based on biases and on different Ant states.
+     * Only the slot itself is changed, changes to the world are recorded and applied by leaveScent and commit.
+     * No Tile is created, cells without a Tile are seen as EMPTY_CELL.
+     *
+     * @param table   Table of the Ant, must be != null
+     * @param slot    Slot of the Ant
+     * @param scratch Arrays of the current thread, must be != null
+     */
+    static void update(AntTable table, int slot, Scratch scratch) {
+        table.updated[slot] = true;
+        table.previousX[slot] = table.x[slot];
+        table.previousY[slot] = table.y[slot];
+        scratch.random.setState(table.random[slot]);
         // new neighbours are found
-        updateAvailableNeighbours();
+        updateAvailableNeighbours(table, slot, scratch);
         //act on tile
-        doThing();
+        doThing(table, slot, scratch);
         //find new tile
-        makeMove();
-        return true;
+        makeMove(table, slot, scratch);
+        table.random[slot] = scratch.random.getState();
+    }
+
+    /**
+     * Adds the scent of the ant to the tile it was standing on in the last update.
+     * Is called for all ants of one nest by the same thread, because they share a scent layer.
+     */
+    public void leaveScent() {
+        if (table.updated[slot]) {
+            table.getGrid().getTile(table.previousX[slot], table.previousY[slot]).addStink(nest);
+        }
+    }
+
+    /**
+     * Applies the changes to the world which were recorded in the last update.
+     * Is called sequentially in a fixed order, so food sources, births and deaths do not depend on thread timing.
+     */
+    public void commit() {
+        AntTable t = table;
+        Grid grid = t.getGrid();
+        if (t.updated[slot]) {
+            grid.getAntIndex().move(t.previousX[slot], t.previousY[slot], t.x[slot], t.y[slot]);
+        }
+
+        FoodSource consumedFood = t.consumedFood[slot];
+        if (consumedFood != null) {
+            if (!nest.containsLocation(consumedFood)) nest.addLocation(consumedFood);
+            if (!consumedFood.decreaseFoodAmount()) {
+                grid.removeTile(consumedFood);
+                nest.removeLocation(consumedFood);
+            }
+        }
+
+        boolean delivered = t.delivered[slot];
+        boolean dead = t.dead[slot];
+        t.updated[slot] = false;
+        t.consumedFood[slot] = null;
+        t.delivered[slot] = false;
+        t.dead[slot] = false;
+
+        // duplicates ant if it has food and is at the nest
+        if (delivered) {
+            nest.addAnt(this);
+            nest.addFood();
+        }
+
+        if (dead) {
+            nest.killAnt(this);
+        }
     }
 
     /**
@@ -120,7 +203,7 @@ public class Ant implements Entity {
      */
     @Override
     public Vector getPosition() {
-        return position;
+        return new Vector(table.x[slot], table.y[slot]);
     }
 
     /**
@@ -131,7 +214,7 @@ public class Ant implements Entity {
      */
     @Override
     public Color getColor() {
-        return nest.getColor().darker();
+        return nest.getAntColor();
     }
 
     /**
@@ -140,7 +223,7 @@ public class Ant implements Entity {
      * @return direction of ant
      */
     public Vector getDirection() {
-        return lookDirection[2];
+        return Heading.toVector(table.heading[slot]);
     }
 
     /**
@@ -149,54 +232,89 @@ public class Ant implements Entity {
      * @param direction Must be a Vector with x and y coordinates in [-1;1]
      */
     public void setDirection(Vector direction) {
-        lookDirection[2] = direction;
+        table.heading[slot] = Heading.of(direction);
     }
 
     /**
-     * Determines the next move of the ant on the grid.
+     * Determines the next move of the ant in a slot on the grid.
+     * Uses the neighbours which were found by updateAvailableNeighbours.
      */
-    private void makeMove() {
+    static void makeMove(AntTable t, int slot, Scratch scratch) {
+        Tile[] availableNeighbours = scratch.availableNeighbours;
         // if all possible neighbors are obstacles -> turn around.
-        boolean allObstacles = Arrays.stream(availableNeighbours).toList().stream().allMatch(neighbor -> neighbor instanceof Obstacle);
+        boolean allObstacles = true;
+        for (Tile neighbour : availableNeighbours) {
+            allObstacles &= neighbour instanceof Obstacle;
+        }
         if (allObstacles) {
-            setDirection(getDirection().invert());
+            t.heading[slot] = Heading.invert(t.heading[slot]);
             return;
         }
 
-        int bestDirection = 2;
+        int bestDirection = Heading.FRONT;
         int maxBias = 0;
-        randomizeBias();
-        Vector normalizedTarget = target != null ? target.getPosition().normalizedVector(position) : null;
+        int[] modifiedBias = scratch.modifiedBias;
+        randomizeBias(modifiedBias, scratch.random);
+
+        // direction to the target, rounded to one of the 8 directions
+        byte targetKind = t.targetKind[slot];
+        int targetX = 0, targetY = 0;
+        if (targetKind != AntTable.NO_TARGET) {
+            int dx = t.targetX[slot] - t.x[slot];
+            int dy = t.targetY[slot] - t.y[slot];
+            targetX = Heading.roundedX(dx, dy);
+            targetY = Heading.roundedY(dx, dy);
+        }
+        // the side neighbours keep the heading they were looked up with,
+        // only the front follows when doThing turned the ant around
+        int heading = t.heading[slot];
+        int[] neighbourX = Heading.NEIGHBOUR_DX[scratch.neighbourHeading];
+        int[] neighbourY = Heading.NEIGHBOUR_DY[scratch.neighbourHeading];
+        Nest nest = t.handles[slot].nest;
+        byte state = t.state[slot];
+
+        // on the way home the flow field of the nest knows the way around obstacles
+        FlowField flow = targetKind == AntTable.NEST_TARGET ? t.getGrid().getFlowFields().get(nest.getIndex()) : null;
+        int distance = flow == null ? FlowField.UNREACHABLE : flow.getDistance(t.x[slot], t.y[slot]);
+
         for (int i = 0; i < availableNeighbours.length; i++) {
 
-            int directionBias = i == 2 ? this.directionBias * 2 / 3 : modifiedBias[i]; // Penalties for changing direction.
+            int directionBias = i == Heading.FRONT ? DIRECTION_BIAS * 2 / 3 : modifiedBias[i]; // Penalties for changing direction.
 
             int targetDirectionBias = 0;
-            if (target != null) {
-                if (target instanceof Nest)
-                    targetDirectionBias = Vector.dotProduct(normalizedTarget, lookDirection[i]) * targetBias * 3;
-                else targetDirectionBias = Vector.dotProduct(normalizedTarget, lookDirection[i]) * targetBias;
+            int neighbourDistance = distance == FlowField.UNREACHABLE ? FlowField.UNREACHABLE
+                    : flow.getDistance(t.x[slot] + neighbourX[i], t.y[slot] + neighbourY[i]);
+            if (neighbourDistance != FlowField.UNREACHABLE) {
+                // one move closer to the nest is worth as much as heading straight at it
+                targetDirectionBias = (distance - neighbourDistance) * TARGET_BIAS * 6;
+            } else if (targetKind != AntTable.NO_TARGET) {
+                int lookX = i == Heading.FRONT ? Heading.DX[heading] : neighbourX[i];
+                int lookY = i == Heading.FRONT ? Heading.DY[heading] : neighbourY[i];
+                int dotProduct = targetX * lookX + targetY * lookY;
+                if (targetKind == AntTable.NEST_TARGET)
+                    targetDirectionBias = dotProduct * TARGET_BIAS * 3;
+                else targetDirectionBias = dotProduct * TARGET_BIAS;
             }
 
             int stinkDirectionBias = 0;
             Tile currentTile = availableNeighbours[i];
             switch (state) {
                 case EXPLORE -> {
-                    stinkDirectionBias -= (int) (currentTile.getCurrentStink(this.nest) * stinkBias);
+                    stinkDirectionBias -= (int) (currentTile.getCurrentStink(nest) * STINK_BIAS);
                     if (currentTile instanceof FoodSource) stinkDirectionBias = 1000;
                 }
                 case SCAVENGE -> {
-                    stinkDirectionBias += (int) (currentTile.getCurrentStink(this.nest) * stinkBias);
+                    stinkDirectionBias += (int) (currentTile.getCurrentStink(nest) * STINK_BIAS);
                     if (currentTile instanceof FoodSource) stinkDirectionBias = 1000;
 
                 }
-                case COLLECT, RETURN -> {
-                    stinkDirectionBias += (int) (currentTile.getCurrentStink(this.nest) * stinkBias);
+                default -> {
+                    stinkDirectionBias += (int) (currentTile.getCurrentStink(nest) * STINK_BIAS);
                     if (currentTile instanceof Nest) stinkDirectionBias = 1000;
 
                 }
             }
-            stinkDirectionBias -= (int) (currentTile.totalOtherSmell(this.nest) * stinkBias);
+            stinkDirectionBias -= (int) (currentTile.totalOtherSmell(nest) * STINK_BIAS);
 
             int totalDirectionBias = stinkDirectionBias + directionBias + targetDirectionBias;
             if (currentTile instanceof Obstacle) totalDirectionBias = -1000;
@@ -208,9 +326,12 @@ public class Ant implements Entity {
             }
         }
 
-        // Return the tile in the best direction.
-        lookDirection[2] = lookDirection[bestDirection];
-        position = availableNeighbours[bestDirection].getPosition();
+        // Move to the cell in the best direction and look the way it was moved, the front keeps a turn of doThing.
+        if (bestDirection != Heading.FRONT) {
+            t.heading[slot] = Heading.rotate(scratch.neighbourHeading, Heading.LOOK[bestDirection]);
+        }
+        t.x[slot] += neighbourX[bestDirection];
+        t.y[slot] += neighbourY[bestDirection];
     }
 
     /**
@@ -223,57 +344,60 @@ public class Ant implements Entity {
     // Schwache Objektkopplung: es gibt verschiedene Verzweigungen, abhängig von der konkreten Tile-Type,
     // und die Ameise reagiert unterschiedlich darauf. DAs führt zu einer schwachen Objektkopplung, da die Ant-Klasse eine hohe Anzahl von
     // Abhängigkeiten von den konkreten Klassen der Tiles aufweist. Man könnte in den Tiles eine Methode implementieren, die festlegt, wie der Move der Ants aussieht.
-    private void doThing() {
-        Tile current = grid.getTile(this.position);
-        current.addStink(nest);
+    private static void doThing(AntTable t, int slot, Scratch scratch) {
+        Tile current = tileAt(t, t.x[slot], t.y[slot]);
+        Nest nest = t.handles[slot].nest;
 
         if (current instanceof Nest) {
             // duplicates ant if it has food and is at the nest
-            if (state == State.COLLECT) {
-                nest.addAnt(this);
-                nest.addFood();
+            if (t.state[slot] == COLLECT) {
+                t.delivered[slot] = true;
             }
 
-            currentLifetime = lifetime;
-            target = nest.getRandomLocation();
-            if (target == null) {
-                state = State.EXPLORE;
+            t.currentLifetime[slot] = t.lifetime[slot];
+            Tile location = nest.getRandomLocation(scratch.random);
+            if (location == null) {
+                t.targetKind[slot] = AntTable.NO_TARGET;
+                t.state[slot] = EXPLORE;
             } else {
-                state = State.SCAVENGE;
-                setDirection(getDirection().invert());
+                setTarget(t, slot, AntTable.LOCATION_TARGET, location);
+                t.state[slot] = SCAVENGE;
+                t.heading[slot] = Heading.invert(t.heading[slot]);
             }
         }
 
-        if (current instanceof FoodSource) {
-            if (!nest.containsLocation(current)) nest.addLocation(current);
-            if (!((FoodSource) current).decreaseFoodAmount()) {
-                grid.removeTile(current);
-                nest.removeLocation(current);
-            }
-            target = getNest();
-            state = State.COLLECT;
-            setDirection(getDirection().invert());
+        if (current instanceof FoodSource foodSource) {
+            t.consumedFood[slot] = foodSource;
+            setTarget(t, slot, AntTable.NEST_TARGET, nest);
+            t.state[slot] = COLLECT;
+            t.heading[slot] = Heading.invert(t.heading[slot]);
         }
 
         // kill ant if it is on a Tile with a high scent of another nest
-        if (current.totalOtherSmell(this.nest) > 0.9f) {
-            this.nest.killAnt(this);
+        if (current.totalOtherSmell(nest) > 0.9f) {
+            t.dead[slot] = true;
         }
 
         // decrease lifetimes
-        this.currentLifetime--;
-        this.totalLifetime--;
-        if (totalLifetime < 0) {
-            nest.killAnt(this);
+        t.currentLifetime[slot]--;
+        t.totalLifetime[slot]--;
+        if (t.totalLifetime[slot] < 0) {
+            t.dead[slot] = true;
         }
 
-        if (currentLifetime == 0) {
-            state = State.RETURN;
-            target = getNest();
-            setDirection(getDirection().invert());
+        if (t.currentLifetime[slot] == 0) {
+            t.state[slot] = RETURN;
+            setTarget(t, slot, AntTable.NEST_TARGET, nest);
+            t.heading[slot] = Heading.invert(t.heading[slot]);
         }
     }
 
+    private static void setTarget(AntTable t, int slot, byte kind, Tile target) {
+        t.targetKind[slot] = kind;
+        t.targetX[slot] = target.getPosition().getX();
+        t.targetY[slot] = target.getPosition().getY();
+    }
+
     /**
      * @return Nest. Nest != null
      */
@@ -284,8 +408,10 @@ public class Ant implements Entity {
     /**
      * Randomize biases - make move tries to keep its path
      */
-    private void randomizeBias() {
-        Arrays.setAll(modifiedBias, i -> (int) (Math.random() * directionBias));
+    private static void randomizeBias(int[] modifiedBias, RandomStream random) {
+        for (int i = 0; i < modifiedBias.length; i++) {
+            modifiedBias[i] = (int) (random.nextDouble() * DIRECTION_BIAS);
+        }
     }
 
     /**
@@ -298,26 +424,82 @@ public class Ant implements Entity {
     // Verbesserung: Um die Kopplung zu reduzieren, könnten man die Logik für die Nachbarn in die Grid-Klasse auslagern.
     // Diese Methode könnte auch Basis der Position und der lookingDirection der Ant alle möglichen Nachbarn zurückgeben.
     // Das würde den Klassenzusammenhalt verbessern und die Objektkopplung lockern.
-    private void updateAvailableNeighbours() {
-        //generate left hand side vectors
-        lookDirection[0] = Vector.orthogonalVector(lookDirection[2], true);
-        lookDirection[1] = Vector.sharpVector(lookDirection[2], lookDirection[0]);
-
-        //generate right hand side vectors
-        lookDirection[4] = Vector.orthogonalVector(lookDirection[2], false);
-        lookDirection[3] = Vector.sharpVector(lookDirection[2], lookDirection[4]);
-
-        this.availableNeighbours[0] = this.grid.getTile(this.position.add(lookDirection[0]));
-        this.availableNeighbours[1] = this.grid.getTile(this.position.add(lookDirection[1]));
-        this.availableNeighbours[2] = this.grid.getTile(this.position.add(lookDirection[2]));
-        this.availableNeighbours[3] = this.grid.getTile(this.position.add(lookDirection[3]));
-        this.availableNeighbours[4] = this.grid.getTile(this.position.add(lookDirection[4]));
+    static void updateAvailableNeighbours(AntTable t, int slot, Scratch scratch) {
+        int heading = t.heading[slot];
+        int[] lookX = Heading.NEIGHBOUR_DX[heading];
+        int[] lookY = Heading.NEIGHBOUR_DY[heading];
+        int x = t.x[slot];
+        int y = t.y[slot];
+        Tile[] availableNeighbours = scratch.availableNeighbours;
+        scratch.neighbourHeading = heading;
+        for (int i = 0; i < availableNeighbours.length; i++) {
+            availableNeighbours[i] = tileAt(t, x + lookX[i], y + lookY[i]);
+        }
     }
 
     /**
-     * @return a copy of the ant with the same parameters
+     * Only reads loaded chunks, AntIndex.loadAroundAnts loaded every chunk an ant can look into.
+     *
+     * @return Tile at the position or EMPTY_CELL if there is none
+     */
+    private static Tile tileAt(AntTable t, int x, int y) {
+        Chunk chunk = t.getGrid().getTiles().getLoadedChunk(x, y);
+        Tile tile = chunk == null ? null : chunk.get(Chunk.cellIndex(x, y));
+        return tile == null ? EMPTY_CELL : tile;
+    }
+
+    /**
+     * @return position of this ant in the list of its nest, -1 if it is not in the list
+     */
+    int getPopulationSlot() {
+        return populationSlot;
+    }
+
+    /**
+     * Called by the Nest when this ant gets another position in its list.
+     *
+     * @param populationSlot New position, -1 if the ant is not in the list anymore
+     */
+    void setPopulationSlot(int populationSlot) {
+        this.populationSlot = populationSlot;
+    }
+
+    /**
+     * Called by the AntTable when this ant moves into another slot.
+     *
+     * @param slot New slot
+     */
+    void moveTo(int slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * Frees the slot of this Ant after it died. Must only be called by its Nest.
+     */
+    void release() {
+        table.remove(slot);
+        slot = -1;
+    }
+
+    /**
+     * Must only be called in the sequential parts of an update, because the new ant gets the next ant stream.
+     *
+     * @return a copy of the ant with the same parameters and its own random stream
      */
     public Ant copy() {
-        return new Ant(this.grid, this.nest, this.lifetime, this.position);
+        Grid grid = table.getGrid();
+        return new Ant(grid, this.nest, table.lifetime[slot], getPosition(), grid.getRandom().nextAntStream());
+    }
+
+    /**
+     * Turns this dead Ant into a copy of the given Ant, like copy but without allocating.
+     * The result is the same as if copy was called, so reusing ants does not change the simulation.
+     * Must only be called in the sequential parts of an update.
+     *
+     * @param parent Ant of the same Nest, must be != null
+     */
+    public void reviveAsCopyOf(Ant parent) {
+        slot = table.born(this, nest.getIndex(), table.x[parent.slot], table.y[parent.slot],
+                table.getGrid().getRandom().nextAntState());
     }
 }
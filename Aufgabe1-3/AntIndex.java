@@ -0,0 +1,221 @@
+// Modularisierungseinheit: Klasse
+
+// Keeps track of where the ants of a Grid are, without storing the ants itself.
+// Every chunk counts the ants on it, every column and row of the world counts the ants in it.
+// The counts are changed when ants are born, move or die, so queries do not need to look at every ant.
+// Changes are only made in the sequential commit phase of Grid.update.
+public class AntIndex {
+    private final TileStorage tiles;
+
+    private final Histogram columns = new Histogram();
+    private final Histogram rows = new Histogram();
+    private int size;
+
+    // counts per coordinate, grows in both directions when needed
+    private static final class Histogram {
+        private int origin;
+        private int[] counts = new int[0];
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+
+        private int get(int coordinate) {
+            int index = coordinate - origin;
+            return index < 0 || index >= counts.length ? 0 : counts[index];
+        }
+
+        private void add(int coordinate) {
+            if (counts.length == 0) {
+                origin = coordinate - 64;
+                counts = new int[128];
+            }
+            int index = coordinate - origin;
+            if (index < 0 || index >= counts.length) {
+                int newOrigin = Math.min(origin, coordinate) - counts.length / 2;
+                int newEnd = Math.max(origin + counts.length, coordinate + 1) + counts.length / 2;
+                int[] grown = new int[newEnd - newOrigin];
+                System.arraycopy(counts, 0, grown, origin - newOrigin, counts.length);
+                counts = grown;
+                origin = newOrigin;
+                index = coordinate - origin;
+            }
+            counts[index]++;
+            min = Math.min(min, coordinate);
+            max = Math.max(max, coordinate);
+        }
+
+        private void remove(int coordinate) {
+            if (--counts[coordinate - origin] > 0 || (coordinate != min && coordinate != max)) {
+                return;
+            }
+
+            // the extent only shrinks, so every empty coordinate is skipped at most once
+            while (min <= max && get(min) == 0) min++;
+            while (max >= min && get(max) == 0) max--;
+            if (min > max) {
+                min = Integer.MAX_VALUE;
+                max = Integer.MIN_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Initializes an empty index.
+     *
+     * @param tiles Storage of the chunks which count the ants, must be != null
+     */
+    public AntIndex(TileStorage tiles) {
+        this.tiles = tiles;
+    }
+
+    /**
+     * Adds an ant at the given position.
+     *
+     * @param position Position of the ant, must be != null
+     */
+    public void add(Vector position) {
+        add(position.getX(), position.getY());
+    }
+
+    /**
+     * Adds an ant at the given position.
+     *
+     * @param x X coordinate of the ant
+     * @param y Y coordinate of the ant
+     */
+    public void add(int x, int y) {
+        tiles.getOrCreateChunk(x, y).changeAntCount(1);
+        columns.add(x);
+        rows.add(y);
+        size++;
+    }
+
+    /**
+     * Removes an ant from the given position.
+     * There must be an ant at this position.
+     *
+     * @param position Position of the ant, must be != null
+     */
+    public void remove(Vector position) {
+        remove(position.getX(), position.getY());
+    }
+
+    /**
+     * Removes an ant from the given position.
+     * There must be an ant at this position.
+     *
+     * @param x X coordinate of the ant
+     * @param y Y coordinate of the ant
+     */
+    public void remove(int x, int y) {
+        tiles.getOrCreateChunk(x, y).changeAntCount(-1);
+        columns.remove(x);
+        rows.remove(y);
+        size--;
+    }
+
+    /**
+     * Moves an ant. Has no effect if both positions are equal.
+     *
+     * @param from Old position, must be != null
+     * @param to   New position, must be != null
+     */
+    public void move(Vector from, Vector to) {
+        move(from.getX(), from.getY(), to.getX(), to.getY());
+    }
+
+    /**
+     * Moves an ant. Has no effect if both positions are equal.
+     *
+     * @param fromX Old x coordinate
+     * @param fromY Old y coordinate
+     * @param toX   New x coordinate
+     * @param toY   New y coordinate
+     */
+    public void move(int fromX, int fromY, int toX, int toY) {
+        if (fromX != toX || fromY != toY) {
+            remove(fromX, fromY);
+            add(toX, toY);
+        }
+    }
+
+    /**
+     * @return amount of ants, is >= 0
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param x X coordinate
+     * @return true if there is at least one ant with this x coordinate
+     */
+    public boolean hasAntInColumn(int x) {
+        return columns.get(x) > 0;
+    }
+
+    /**
+     * @param y Y coordinate
+     * @return true if there is at least one ant with this y coordinate
+     */
+    public boolean hasAntInRow(int y) {
+        return rows.get(y) > 0;
+    }
+
+    /**
+     * Returns the amount of ants in the chunk of a position.
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return amount of ants, is >= 0
+     */
+    public int countInChunk(int x, int y) {
+        // chunks which are not loaded never contain ants
+        Chunk chunk = tiles.getLoadedChunk(x, y);
+        return chunk == null ? 0 : chunk.getAntCount();
+    }
+
+    /**
+     * Loads the pending chunks around every chunk with ants, in creation order of the chunks.
+     * Afterwards the ants can look at their neighbour cells without loading anything,
+     * so the parallel ant phase of Grid.update neither reads the spill file nor changes the storage.
+     * Must be called in a sequential part of an update.
+     */
+    public void loadAroundAnts() {
+        if (tiles.getPendingCount() == 0) {
+            return;
+        }
+        for (Chunk chunk : tiles.getChunks()) {
+            if (chunk.getAntCount() > 0) {
+                tiles.loadAround(chunk);
+            }
+        }
+    }
+
+    /**
+     * @return smallest x coordinate of all ants, Integer.MAX_VALUE if there are no ants
+     */
+    public int getMinX() {
+        return columns.min;
+    }
+
+    /**
+     * @return biggest x coordinate of all ants, Integer.MIN_VALUE if there are no ants
+     */
+    public int getMaxX() {
+        return columns.max;
+    }
+
+    /**
+     * @return smallest y coordinate of all ants, Integer.MAX_VALUE if there are no ants
+     */
+    public int getMinY() {
+        return rows.min;
+    }
+
+    /**
+     * @return biggest y coordinate of all ants, Integer.MIN_VALUE if there are no ants
+     */
+    public int getMaxY() {
+        return rows.max;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+// Modularisierungseinheit: Klasse
+
+// Splits the ants of an AntTable into shards of neighbouring ants, one per worker thread (domain decomposition).
+// A shard is a band of whole chunk rows, so two shards never write into the same chunk, and the bands are chosen
+// so that every shard gets about the same amount of ants.
+// In the parallel phases ants only read the cells around them and only write into the cells of their own band.
+// The read buffers of neighbouring bands do not change during a phase, so the bands do not need to exchange
+// anything while it runs: the join at the end of the phase is the halo exchange.
+public class AntShards {
+    // slots of the ants ordered by band, in slot order inside a band
+    private int[] slots = new int[0];
+
+    // shard i covers slots[bounds[i]] to slots[bounds[i + 1] - 1]
+    private int[] bounds = new int[1];
+    private int shardCount;
+
+    // amount of ants per chunk row, reused by assign
+    private int[] rowStarts = new int[0];
+
+    /**
+     * Splits the ants of a table into shards.
+     * Must be called in a sequential part of an update.
+     *
+     * @param table    Table of the ants, must be != null
+     * @param shards   Wanted amount of shards, must be > 0
+     * @param previous true to use the position an ant left in the last update (where it leaves its scent),
+     *                 false to use its current position
+     */
+    public void assign(AntTable table, int shards, boolean previous) {
+        int size = table.size();
+        if (slots.length < size) {
+            slots = new int[Math.max(size, slots.length * 2)];
+        }
+        if (bounds.length < shards + 1) {
+            bounds = new int[shards + 1];
+        }
+
+        int minRow = Integer.MAX_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        for (int slot = 0; slot < size; slot++) {
+            int row = row(table, slot, previous);
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+        }
+        int rows = size == 0 ? 0 : maxRow - minRow + 1;
+
+        // counting sort by chunk row, it keeps the slot order inside a row
+        if (rowStarts.length < rows + 1) {
+            rowStarts = new int[rows + 1];
+        }
+        Arrays.fill(rowStarts, 0, rows + 1, 0);
+        for (int slot = 0; slot < size; slot++) {
+            rowStarts[row(table, slot, previous) - minRow + 1]++;
+        }
+        for (int row = 0; row < rows; row++) {
+            rowStarts[row + 1] += rowStarts[row];
+        }
+
+        // a shard ends at the first row boundary after its share of the ants
+        shardCount = 0;
+        bounds[0] = 0;
+        for (int row = 1; row <= rows && shardCount < shards - 1; row++) {
+            if (rowStarts[row] >= (long) size * (shardCount + 1) / shards && rowStarts[row] > bounds[shardCount]) {
+                bounds[++shardCount] = rowStarts[row];
+            }
+        }
+        if (bounds[shardCount] < size || shardCount == 0) {
+            bounds[++shardCount] = size;
+        }
+
+        for (int slot = 0; slot < size; slot++) {
+            slots[rowStarts[row(table, slot, previous) - minRow]++] = slot;
+        }
+    }
+
+    /**
+     * @return amount of shards of the last assign, is > 0
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Calls the given action for every ant of a shard in slot order. May be called from any thread.
+     *
+     * @param shard  Shard in [0; getShardCount())
+     * @param action Called with the slot of every ant, must be != null
+     */
+    public void forEach(int shard, IntConsumer action) {
+        for (int i = bounds[shard]; i < bounds[shard + 1]; i++) {
+            action.accept(slots[i]);
+        }
+    }
+
+    /**
+     * @return chunk row of an ant
+     */
+    private static int row(AntTable table, int slot, boolean previous) {
+        // an ant which was born in the last update has no previous position and leaves no scent
+        int y = previous && table.updated[slot] ? table.previousY[slot] : table.y[slot];
+        return y >> Chunk.SHIFT;
+    }
+}
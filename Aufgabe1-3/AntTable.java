@@ -0,0 +1,285 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+// Modularisierungseinheit: Klasse
+// Daten werden nur von Ant und AntTable verwendet, die Spalten sind deshalb paketweit sichtbar.
+
+// Stores the state of all living ants of a Grid in parallel arrays, one slot per ant (entity-component-system layout).
+// An Ant object is only a handle onto its slot. The update iterates the slots in order, so it reads contiguous memory
+// instead of following references, and it is split into ranges of slots across the threads of the Grid.
+// Slots are kept dense: when an ant dies, the ant in the last slot moves into its slot.
+// Ants are only added and removed in the sequential parts of an update.
+public class AntTable {
+    // kinds of targets
+    static final byte NO_TARGET = 0;
+    static final byte NEST_TARGET = 1;
+    static final byte LOCATION_TARGET = 2;
+
+    // amount of slots one thread updates at once
+    private static final int BLOCK = 1024;
+
+    private final Grid grid;
+    private int size;
+
+    // one entry per slot, only the first size entries are used
+    Ant[] handles;
+    int[] x;
+    int[] y;
+    int[] heading;
+    byte[] state;
+    int[] lifetime;
+    int[] currentLifetime;
+    int[] totalLifetime;
+    int[] nest;
+    byte[] targetKind;
+    int[] targetX;
+    int[] targetY;
+    long[] random;
+
+    // changes to the world which were recorded in the update and are applied by Ant.commit
+    boolean[] updated;
+    int[] previousX;
+    int[] previousY;
+    boolean[] delivered;
+    boolean[] dead;
+    FoodSource[] consumedFood;
+
+    // used by born, which only runs sequentially
+    private final RandomStream bornRandom = new RandomStream(0);
+
+    /**
+     * Initializes an empty table.
+     *
+     * @param grid Grid of the ants, must be != null
+     */
+    public AntTable(Grid grid) {
+        this.grid = grid;
+        allocate(256);
+    }
+
+    /**
+     * @return amount of living ants, is >= 0
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param slot Slot in [0; size)
+     * @return Ant in the slot, is != null
+     */
+    public Ant getAnt(int slot) {
+        return handles[slot];
+    }
+
+    /**
+     * @param slot Slot in [0; size)
+     * @return x coordinate of the ant in the slot
+     */
+    public int getX(int slot) {
+        return x[slot];
+    }
+
+    /**
+     * @param slot Slot in [0; size)
+     * @return y coordinate of the ant in the slot
+     */
+    public int getY(int slot) {
+        return y[slot];
+    }
+
+    /**
+     * @param slot Slot in [0; size)
+     * @return heading of the ant in the slot, see Heading
+     */
+    public int getHeading(int slot) {
+        return heading[slot];
+    }
+
+    /**
+     * @param slot Slot in [0; size)
+     * @return layer index of the nest of the ant in the slot
+     */
+    public int getNestIndex(int slot) {
+        return nest[slot];
+    }
+
+    /**
+     * Updates every ant, split into ranges of slots across the threads of the pool.
+     * The ants only change their own slots, changes to the world are recorded for Ant.commit.
+     *
+     * @param pool Pool of the Grid, must be != null
+     */
+    public void update(ForkJoinPool pool) {
+        int blocks = (size + BLOCK - 1) / BLOCK;
+        if (blocks < 2 || pool.getParallelism() < 2) {
+            update(0, size);
+            return;
+        }
+        pool.submit(() -> IntStream.range(0, blocks).parallel()
+                .forEach(block -> update(block * BLOCK, Math.min(size, (block + 1) * BLOCK)))).join();
+    }
+
+    /**
+     * Updates every ant, one shard per task. The result is the same as with update(ForkJoinPool),
+     * every ant only reads the world and writes its own slot.
+     *
+     * @param pool   Pool of the Grid, must be != null
+     * @param shards Ants split by their current position, must be != null
+     */
+    public void update(ForkJoinPool pool, AntShards shards) {
+        pool.submit(() -> IntStream.range(0, shards.getShardCount()).parallel().forEach(shard -> {
+            Ant.Scratch scratch = new Ant.Scratch();
+            shards.forEach(shard, slot -> Ant.update(this, slot, scratch));
+        })).join();
+    }
+
+    /**
+     * Lets every ant leave its scent, one shard per task. A shard only writes into the chunks of its band.
+     * The result is the same as with Nest.depositScent, because every ant adds the same amount of scent.
+     *
+     * @param pool   Pool of the Grid, must be != null
+     * @param shards Ants split by the position they left, must be != null
+     */
+    public void depositScent(ForkJoinPool pool, AntShards shards) {
+        pool.submit(() -> IntStream.range(0, shards.getShardCount()).parallel()
+                .forEach(shard -> shards.forEach(shard, slot -> handles[slot].leaveScent()))).join();
+    }
+
+    /**
+     * Updates the ants in a range of slots on the current thread.
+     *
+     * @param from First slot, must be >= 0
+     * @param to   Slot after the last one, must be <= size
+     */
+    public void update(int from, int to) {
+        Ant.Scratch scratch = new Ant.Scratch();
+        for (int slot = from; slot < to; slot++) {
+            Ant.update(this, slot, scratch);
+        }
+    }
+
+    /**
+     * Creates the Tiles the ants of the last update are going to leave their scent on, in slot order.
+     * These are the only Tiles an update of the ants creates. Doing it here, sequentially, keeps the scent phase
+     * free of structural changes and the order of new chunks independent of the threads.
+     */
+    public void createScentTiles() {
+        for (int slot = 0; slot < size; slot++) {
+            if (updated[slot]) {
+                grid.getTile(previousX[slot], previousY[slot]);
+            }
+        }
+    }
+
+    /**
+     * Gives a new ant a slot and draws its heading and lifetimes from its random stream.
+     *
+     * @param ant         Handle of the ant, must be != null
+     * @param nestIndex   Index of the nest of the ant
+     * @param x           X coordinate of the ant
+     * @param y           Y coordinate of the ant
+     * @param randomState State of the random stream of the ant
+     * @return slot of the ant
+     */
+    int born(Ant ant, int nestIndex, int x, int y, long randomState) {
+        int slot = add(ant);
+        bornRandom.setState(randomState);
+        this.nest[slot] = nestIndex;
+        this.x[slot] = x;
+        this.y[slot] = y;
+        this.state[slot] = 0;
+        this.targetKind[slot] = NO_TARGET;
+        this.heading[slot] = Heading.random(bornRandom);
+        this.lifetime[slot] = 100 + (int) (bornRandom.nextDouble() * 50);
+        this.currentLifetime[slot] = this.lifetime[slot];
+        this.totalLifetime[slot] = this.currentLifetime[slot] * (int) (bornRandom.nextDouble() * 5 + 5);
+        this.random[slot] = bornRandom.getState();
+        return slot;
+    }
+
+    /**
+     * Gives an ant a slot. All columns except the recorded changes have to be set by the caller.
+     *
+     * @param ant Handle of the ant, must be != null
+     * @return slot of the ant
+     */
+    int add(Ant ant) {
+        if (size == handles.length) {
+            allocate(size * 2);
+        }
+        int slot = size++;
+        handles[slot] = ant;
+        updated[slot] = false;
+        delivered[slot] = false;
+        dead[slot] = false;
+        consumedFood[slot] = null;
+        return slot;
+    }
+
+    /**
+     * Frees the slot of a dead ant. The ant in the last slot moves into it.
+     *
+     * @param slot Slot in [0; size)
+     */
+    void remove(int slot) {
+        int last = --size;
+        if (slot != last) {
+            handles[slot] = handles[last];
+            handles[slot].moveTo(slot);
+            x[slot] = x[last];
+            y[slot] = y[last];
+            heading[slot] = heading[last];
+            state[slot] = state[last];
+            lifetime[slot] = lifetime[last];
+            currentLifetime[slot] = currentLifetime[last];
+            totalLifetime[slot] = totalLifetime[last];
+            nest[slot] = nest[last];
+            targetKind[slot] = targetKind[last];
+            targetX[slot] = targetX[last];
+            targetY[slot] = targetY[last];
+            random[slot] = random[last];
+            updated[slot] = updated[last];
+            previousX[slot] = previousX[last];
+            previousY[slot] = previousY[last];
+            delivered[slot] = delivered[last];
+            dead[slot] = dead[last];
+            consumedFood[slot] = consumedFood[last];
+        }
+        handles[last] = null;
+        consumedFood[last] = null;
+    }
+
+    /**
+     * @return Grid of the ants, is != null
+     */
+    Grid getGrid() {
+        return grid;
+    }
+
+    private void allocate(int capacity) {
+        handles = handles == null ? new Ant[capacity] : Arrays.copyOf(handles, capacity);
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        heading = grow(heading, capacity);
+        state = state == null ? new byte[capacity] : Arrays.copyOf(state, capacity);
+        lifetime = grow(lifetime, capacity);
+        currentLifetime = grow(currentLifetime, capacity);
+        totalLifetime = grow(totalLifetime, capacity);
+        nest = grow(nest, capacity);
+        targetKind = targetKind == null ? new byte[capacity] : Arrays.copyOf(targetKind, capacity);
+        targetX = grow(targetX, capacity);
+        targetY = grow(targetY, capacity);
+        random = random == null ? new long[capacity] : Arrays.copyOf(random, capacity);
+        updated = updated == null ? new boolean[capacity] : Arrays.copyOf(updated, capacity);
+        previousX = grow(previousX, capacity);
+        previousY = grow(previousY, capacity);
+        delivered = delivered == null ? new boolean[capacity] : Arrays.copyOf(delivered, capacity);
+        dead = dead == null ? new boolean[capacity] : Arrays.copyOf(dead, capacity);
+        consumedFood = consumedFood == null ? new FoodSource[capacity] : Arrays.copyOf(consumedFood, capacity);
+    }
+
+    private static int[] grow(int[] column, int capacity) {
+        return column == null ? new int[capacity] : Arrays.copyOf(column, capacity);
+    }
+}
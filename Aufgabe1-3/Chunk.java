@@ -0,0 +1,460 @@
+import java.util.Arrays;
+import java.util.BitSet;
+// Modularisierungseinheit: Klasse
+// Daten werden vom TileStorage verwaltet, nur der Zugriff über Zellindizes ist sichtbar.
+
+// A fixed-size square block of the world.
+// Tiles are stored in a flat array, the cell index is (localY * SIZE + localX).
+// The scent of every nest is stored in a float layer per nest with the same indexing.
+// Cells with a Tile which can change on its own are marked in a bit set, so an update can skip the static ones.
+public class Chunk {
+    public static final int SHIFT = 5;
+    public static final int SIZE = 1 << SHIFT;
+    public static final int MASK = SIZE - 1;
+    public static final int CELLS = SIZE * SIZE;
+
+    // chunk coordinates, multiply with SIZE to get world coordinates
+    private final int chunkX;
+    private final int chunkY;
+
+    private final Tile[] tiles = new Tile[CELLS];
+    private int tileCount;
+
+    // cells whose Tile is not static (see Tile.isStatic), in cell order
+    private final BitSet dynamicCells = new BitSet(CELLS);
+
+    // amount of plain Tiles, only their scent decays
+    private int scentTileCount;
+
+    // bit per cell with an Obstacle, replaced as a whole when it changes, so it can be shared with FlowFields
+    private long[] obstacles;
+
+    // removed scent tiles stay in their cell and are revived when an ant comes back, null until the first removal
+    // a revived tile still has the right position, so exploring a cell again allocates nothing
+    private Tile[] released;
+
+    // amount of ants on this chunk, maintained by the AntIndex
+    private int antCount;
+
+    // increased whenever a Tile or the scent of this chunk changes, so a FrameBuffer knows what to rasterize again
+    private int version;
+
+    // field which knows the nest of each layer
+    private final PheromoneField field;
+
+    // one layer per nest index, a layer is null as long as the nest never left scent in this chunk
+    // layers is the read buffer, the decay writes into writeLayers and swaps them afterwards
+    private volatile float[][] layers;
+    private float[][] writeLayers = new float[0][];
+
+    // decay factor per cell, depends on the kind of Tile in the cell, empty cells decay like a plain Tile
+    private final float[] decayRates = new float[CELLS];
+
+    /**
+     * Initializes an empty Chunk.
+     *
+     * @param chunkX X coordinate of the chunk (world x >> SHIFT)
+     * @param chunkY Y coordinate of the chunk (world y >> SHIFT)
+     * @param field  PheromoneField the scent layers belong to, must be != null
+     */
+    public Chunk(int chunkX, int chunkY, PheromoneField field) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.field = field;
+        this.layers = new float[field.getLayerCount()][];
+        Arrays.fill(decayRates, Tile.stinkDeletionRate);
+    }
+
+    /**
+     * Returns the index of a world position inside its chunk.
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return Cell index in [0; CELLS)
+     */
+    public static int cellIndex(int x, int y) {
+        return ((y & MASK) << SHIFT) | (x & MASK);
+    }
+
+    /**
+     * @return X coordinate of the chunk
+     */
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    /**
+     * @return Y coordinate of the chunk
+     */
+    public int getChunkY() {
+        return chunkY;
+    }
+
+    /**
+     * @param cell Cell index in [0; CELLS)
+     * @return Tile in the given cell or null if there is none
+     */
+    public Tile get(int cell) {
+        return tiles[cell];
+    }
+
+    /**
+     * Stores a Tile in the given cell. An existing Tile gets replaced.
+     *
+     * @param cell Cell index in [0; CELLS)
+     * @param tile Tile, must be != null
+     */
+    public synchronized void set(int cell, Tile tile) {
+        if (tiles[cell] == null) {
+            tileCount++;
+        } else {
+            detach(cell, tiles[cell]);
+        }
+        tiles[cell] = tile;
+        attach(cell, tile);
+    }
+
+    /**
+     * Stores a Tile in the given cell if the cell is empty.
+     *
+     * @param cell Cell index in [0; CELLS)
+     * @param tile Tile, must be != null
+     * @return the Tile which is in the cell afterwards, is != null
+     */
+    public synchronized Tile setIfAbsent(int cell, Tile tile) {
+        Tile current = tiles[cell];
+        if (current != null) {
+            return current;
+        }
+        tiles[cell] = tile;
+        tileCount++;
+        attach(cell, tile);
+        return tile;
+    }
+
+    /**
+     * Returns the Tile in the given cell and creates a plain Tile if the cell is empty.
+     * A plain Tile which was removed from the cell before is reused.
+     *
+     * @param cell Cell index in [0; CELLS)
+     * @return the Tile which is in the cell afterwards, is != null
+     */
+    public synchronized Tile getOrCreate(int cell) {
+        Tile current = tiles[cell];
+        if (current != null) {
+            return current;
+        }
+        Tile tile = released == null ? null : released[cell];
+        if (tile == null) {
+            tile = new Tile(new Vector((chunkX << SHIFT) | (cell & MASK), (chunkY << SHIFT) | (cell >> SHIFT)));
+        } else {
+            released[cell] = null;
+        }
+        tiles[cell] = tile;
+        tileCount++;
+        attach(cell, tile);
+        return tile;
+    }
+
+    /**
+     * Stores all given Tiles in their cells at once, cells which already contain a Tile are kept.
+     *
+     * @param cells Tile per cell index or null to keep the cell, must have CELLS entries
+     */
+    public synchronized void setAllIfAbsent(Tile[] cells) {
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (cells[cell] != null && tiles[cell] == null) {
+                tiles[cell] = cells[cell];
+                tileCount++;
+                attach(cell, cells[cell]);
+            }
+        }
+    }
+
+    /**
+     * Removes the Tile in the given cell together with its scent. Has no effect if the cell is empty.
+     *
+     * @param cell Cell index in [0; CELLS)
+     */
+    public synchronized void clear(int cell) {
+        Tile tile = tiles[cell];
+        if (tile != null) {
+            if (tile.getClass() == Tile.class) {
+                if (released == null) {
+                    released = new Tile[CELLS];
+                }
+                released[cell] = tile;
+            }
+            tiles[cell] = null;
+            tileCount--;
+            detach(cell, tile);
+            for (float[] layer : layers) {
+                if (layer != null) {
+                    layer[cell] = 0f;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if scent can flow into and out of a cell. This is the case for empty cells and plain Tiles,
+     * obstacles, food sources and nests keep their scent.
+     *
+     * @param cell Cell index in [0; CELLS)
+     * @return true if the cell takes part in the diffusion
+     */
+    public boolean isOpen(int cell) {
+        Tile tile = tiles[cell];
+        return tile == null || tile.getClass() == Tile.class;
+    }
+
+    /**
+     * @return amount of ants on this chunk, is >= 0
+     */
+    public int getAntCount() {
+        return antCount;
+    }
+
+    /**
+     * Changes the amount of ants on this chunk.
+     *
+     * @param delta Amount of ants which entered (> 0) or left (< 0) the chunk
+     */
+    public void changeAntCount(int delta) {
+        antCount += delta;
+    }
+
+    /**
+     * @return counter which changes whenever a Tile or the scent of this chunk changes
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Records that the scent of this chunk changed. Changes of the Tiles are recorded by the chunk itself.
+     */
+    public void markChanged() {
+        version++;
+    }
+
+    /**
+     * @return PheromoneField of this chunk, is != null
+     */
+    public PheromoneField getField() {
+        return field;
+    }
+
+    /**
+     * Returns the scent layer of a nest.
+     *
+     * @param layer Layer index of the nest
+     * @return the layer or null if the nest has no scent in this chunk
+     */
+    public float[] getLayer(int layer) {
+        float[][] current = layers;
+        return layer < current.length ? current[layer] : null;
+    }
+
+    /**
+     * Returns the write buffer of a layer, it has no defined content.
+     * The layer must already exist in the read buffer.
+     *
+     * @param layer Layer index of the nest
+     * @return write buffer of the layer, is != null
+     */
+    public synchronized float[] getWriteLayer(int layer) {
+        if (layer >= writeLayers.length) {
+            writeLayers = Arrays.copyOf(writeLayers, layers.length);
+        }
+        if (writeLayers[layer] == null) {
+            writeLayers[layer] = new float[CELLS];
+        }
+        return writeLayers[layer];
+    }
+
+    /**
+     * Swaps the read and the write buffer of a layer.
+     *
+     * @param layer Layer index of the nest, its write buffer must exist
+     */
+    public synchronized void swapLayer(int layer) {
+        float[][] current = layers;
+        float[] read = current[layer];
+        current[layer] = writeLayers[layer];
+        writeLayers[layer] = read;
+    }
+
+    /**
+     * @return amount of layer slots in this chunk, some of them might be null
+     */
+    public int getLayerSlots() {
+        return layers.length;
+    }
+
+    /**
+     * @return decay factor per cell, is != null
+     */
+    public float[] getDecayRates() {
+        return decayRates;
+    }
+
+    /**
+     * Returns the scent of a nest in a cell.
+     *
+     * @param layer Layer index of the nest
+     * @param cell  Cell index in [0; CELLS)
+     * @return scent, is >= 0
+     */
+    public float getScent(int layer, int cell) {
+        float[] values = getLayer(layer);
+        return values == null ? 0f : values[cell];
+    }
+
+    /**
+     * Returns the layer with the highest scent in a cell.
+     *
+     * @param cell Cell index in [0; CELLS)
+     * @return layer index or -1 if there is no scent in the cell
+     */
+    public int getStrongestLayer(int cell) {
+        float[][] current = layers;
+        int strongest = -1;
+        float max = 0f;
+        for (int layer = 0; layer < current.length; layer++) {
+            if (current[layer] != null && current[layer][cell] > max) {
+                max = current[layer][cell];
+                strongest = layer;
+            }
+        }
+        return strongest;
+    }
+
+    /**
+     * Returns the sum of the scent of every layer except the given one.
+     *
+     * @param layer Layer index to exclude
+     * @param cell  Cell index in [0; CELLS)
+     * @return sum of scents, is >= 0
+     */
+    public float getOtherScent(int layer, int cell) {
+        float[][] current = layers;
+        float sum = 0f;
+        for (int other = 0; other < current.length; other++) {
+            if (other != layer && current[other] != null) {
+                sum += current[other][cell];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Adds scent to a cell. The scent of a layer in a cell can be at most 1.
+     *
+     * @param layer  Layer index of the nest
+     * @param cell   Cell index in [0; CELLS)
+     * @param amount Amount of scent to add, must be >= 0
+     */
+    public void deposit(int layer, int cell, float amount) {
+        float[] values = getLayer(layer);
+        if (values == null) {
+            values = createLayer(layer);
+        }
+        values[cell] = Math.min(values[cell] + amount, 1);
+    }
+
+    /**
+     * Allocates the layer of a nest, the slot array grows if new nests were registered.
+     * Returns the existing layer if there is one.
+     *
+     * @param layer Layer index of the nest, must be registered in the PheromoneField
+     * @return the layer, is != null
+     */
+    public synchronized float[] createLayer(int layer) {
+        float[][] current = layers;
+        if (layer >= current.length) {
+            current = Arrays.copyOf(current, Math.max(layer + 1, field.getLayerCount()));
+        }
+        if (current[layer] == null) {
+            current[layer] = new float[CELLS];
+        }
+        layers = current;
+        return current[layer];
+    }
+
+    /**
+     * Returns the next cell with a Tile which is not static.
+     *
+     * @param from Cell index to start from, must be >= 0
+     * @return cell index or -1 if there is no such cell at or after from
+     */
+    public int nextDynamicCell(int from) {
+        return dynamicCells.nextSetBit(from);
+    }
+
+    /**
+     * @return true if at least one Tile of this chunk is not static
+     */
+    public boolean hasDynamicTiles() {
+        return !dynamicCells.isEmpty();
+    }
+
+    /**
+     * Returns the cells with an Obstacle, bit (cell % 64) of entry (cell / 64) is set for each of them.
+     * The array is never changed afterwards, a change of the obstacles replaces it.
+     *
+     * @return mask with CELLS / 64 entries or null if there is no Obstacle in this chunk
+     */
+    public long[] getObstacles() {
+        return obstacles;
+    }
+
+    /**
+     * @return amount of plain Tiles, is >= 0
+     */
+    public int getScentTileCount() {
+        return scentTileCount;
+    }
+
+    /**
+     * Connects a Tile to its cell so it can read its scent directly.
+     */
+    private void attach(int cell, Tile tile) {
+        version++;
+        decayRates[cell] = tile.getStinkDeletionRate();
+        tile.attach(this, cell);
+        if (!tile.isStatic()) {
+            dynamicCells.set(cell);
+        }
+        if (tile.getClass() == Tile.class) {
+            scentTileCount++;
+        }
+        if (tile instanceof Obstacle) {
+            obstacles = obstacles == null ? new long[CELLS / Long.SIZE] : obstacles.clone();
+            obstacles[cell >> 6] |= 1L << cell;
+        }
+    }
+
+    /**
+     * Reverts attach for a Tile which leaves its cell.
+     */
+    private void detach(int cell, Tile tile) {
+        version++;
+        decayRates[cell] = Tile.stinkDeletionRate;
+        dynamicCells.clear(cell);
+        if (tile.getClass() == Tile.class) {
+            scentTileCount--;
+        }
+        if (tile instanceof Obstacle) {
+            obstacles = obstacles.clone();
+            obstacles[cell >> 6] &= ~(1L << cell);
+        }
+    }
+
+    /**
+     * @return amount of Tiles in this chunk, is >= 0
+     */
+    public int getTileCount() {
+        return tileCount;
+    }
+}
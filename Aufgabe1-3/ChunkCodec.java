@@ -0,0 +1,116 @@
+import java.nio.ByteBuffer;
+// Modularisierungseinheit: Klasse
+
+// Converts a Chunk into a compact binary block and back.
+// A block contains the kind of every cell, the food amounts and nest layers of the cells which need them
+// and every scent layer of the chunk. Ants are not part of a block, they are stored with their nest.
+public final class ChunkCodec {
+    private static final byte EMPTY = 0;
+    private static final byte TILE = 1;
+    private static final byte FOOD = 2;
+    private static final byte OBSTACLE = 3;
+    private static final byte NEST = 4;
+
+    private ChunkCodec() {
+    }
+
+    /**
+     * Returns the maximal size of a block.
+     *
+     * @param layerSlots Amount of layer slots of the chunk, must be >= 0
+     * @return amount of bytes, is > 0
+     */
+    public static int maxBytes(int layerSlots) {
+        return 3 * Integer.BYTES + Chunk.CELLS * (1 + Integer.BYTES) + layerSlots * (1 + Chunk.CELLS * Float.BYTES);
+    }
+
+    /**
+     * Writes a chunk as a block. The chunk must not change while it is written.
+     *
+     * @param chunk  Chunk, must be != null
+     * @param buffer Buffer with at least maxBytes(chunk.getLayerSlots()) remaining
+     */
+    public static void encode(Chunk chunk, ByteBuffer buffer) {
+        buffer.putInt(chunk.getChunkX()).putInt(chunk.getChunkY());
+        for (int cell = 0; cell < Chunk.CELLS; cell++) {
+            buffer.put(kindOf(chunk.get(cell)));
+        }
+        for (int cell = 0; cell < Chunk.CELLS; cell++) {
+            Tile tile = chunk.get(cell);
+            if (tile instanceof FoodSource foodSource) {
+                buffer.putInt(foodSource.getFoodAmount());
+            } else if (tile instanceof Nest nest) {
+                buffer.putInt(nest.getIndex());
+            }
+        }
+
+        buffer.putInt(chunk.getLayerSlots());
+        for (int layer = 0; layer < chunk.getLayerSlots(); layer++) {
+            float[] values = chunk.getLayer(layer);
+            buffer.put((byte) (values == null ? 0 : 1));
+            if (values != null) {
+                buffer.asFloatBuffer().put(values);
+                buffer.position(buffer.position() + Chunk.CELLS * Float.BYTES);
+            }
+        }
+    }
+
+    /**
+     * Reads a block which was written by encode.
+     * All nests of the block must already be registered in the field.
+     *
+     * @param buffer Buffer positioned at the block, must be != null
+     * @param field  PheromoneField of the Grid, must be != null
+     * @return new Chunk with all tiles and scent layers of the block, is != null
+     */
+    public static Chunk decode(ByteBuffer buffer, PheromoneField field) {
+        Chunk chunk = new Chunk(buffer.getInt(), buffer.getInt(), field);
+        int originX = chunk.getChunkX() << Chunk.SHIFT;
+        int originY = chunk.getChunkY() << Chunk.SHIFT;
+
+        byte[] kinds = new byte[Chunk.CELLS];
+        buffer.get(kinds);
+        for (int cell = 0; cell < Chunk.CELLS; cell++) {
+            Vector position = new Vector(originX + (cell & Chunk.MASK), originY + (cell >> Chunk.SHIFT));
+            Tile tile = switch (kinds[cell]) {
+                case TILE -> new Tile(position);
+                case FOOD -> new FoodSource(position, buffer.getInt());
+                case OBSTACLE -> new Obstacle(position);
+                case NEST -> field.getNest(buffer.getInt());
+                default -> null;
+            };
+            if (tile != null) {
+                chunk.set(cell, tile);
+            }
+        }
+
+        int layerSlots = buffer.getInt();
+        for (int layer = 0; layer < layerSlots; layer++) {
+            if (buffer.get() != 0) {
+                buffer.asFloatBuffer().get(chunk.createLayer(layer));
+                buffer.position(buffer.position() + Chunk.CELLS * Float.BYTES);
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * @param tile Tile or null
+     * @return kind of the Tile in a block
+     */
+    private static byte kindOf(Tile tile) {
+        if (tile == null) {
+            return EMPTY;
+        }
+        if (tile instanceof FoodSource) {
+            return FOOD;
+        }
+        if (tile instanceof Obstacle) {
+            return OBSTACLE;
+        }
+        if (tile instanceof Nest) {
+            return NEST;
+        }
+        return TILE;
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+// Modularisierungseinheit: Klasse
+
+// Keeps the memory of a Grid bounded by moving idle chunks into a spill file.
+// A chunk is idle if no ant is near it and it only contains food sources and obstacles (see Grid.isIdle).
+// An evicted chunk stays pending in the TileStorage and is read back when the Grid accesses it the first time.
+// It then repeats the scent decays it missed, so paging does not change the result of the simulation.
+// Space of chunks which were read back is reused for later evictions. Neighbouring free slots are merged and
+// free space at the end is cut off the file, so the file only grows with the amount of chunks which are evicted.
+public class ChunkPager {
+    // chunks closer than this to a chunk with ants stay in memory
+    private static final int IDLE_DISTANCE = 2;
+
+    private final Grid grid;
+    private final FileChannel spill;
+
+    // buffer for writing a chunk, only used by evictIdle
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(0);
+
+    // end of the used part of the spill file and the capacity of every free slot before it by offset
+    // two free slots never touch each other and the last slot never reaches end
+    private long end;
+    private final TreeMap<Long, Long> free = new TreeMap<>();
+
+    /**
+     * Initializes a pager with a new spill file, which is deleted when the pager is closed.
+     *
+     * @param grid      Grid, must be != null
+     * @param directory Directory for the spill file, must be != null
+     * @throws IOException if the spill file cannot be created
+     */
+    public ChunkPager(Grid grid, Path directory) throws IOException {
+        this.grid = grid;
+        Path file = Files.createTempFile(directory, "chunks", ".spill");
+        this.spill = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Moves every idle chunk into the spill file.
+     * Must be called between two updates of the Grid.
+     *
+     * @return amount of evicted chunks, is >= 0
+     */
+    public int evictIdle() {
+        int evicted = 0;
+        for (Chunk chunk : grid.getTiles().getChunks()) {
+            if (grid.isIdle(chunk, IDLE_DISTANCE)) {
+                evict(chunk);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Closes and deletes the spill file. Chunks in it can not be loaded anymore.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        spill.close();
+    }
+
+    /**
+     * Writes a chunk into the spill file and unloads it.
+     */
+    private void evict(Chunk chunk) {
+        int capacity = ChunkCodec.maxBytes(chunk.getLayerSlots());
+        if (buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+        ChunkCodec.encode(chunk, buffer);
+        buffer.flip();
+        int length = buffer.remaining();
+
+        long offset = allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                spill.write(buffer, offset + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        grid.getTiles().unload(chunk, new Spilled(offset, length, grid.getStep()));
+    }
+
+    // block of an evicted chunk in the spill file
+    private final class Spilled implements TileStorage.Pending {
+        private final long offset;
+        private final int length;
+        private final long evictedStep;
+
+        private Spilled(long offset, int length, long evictedStep) {
+            this.offset = offset;
+            this.length = length;
+            this.evictedStep = evictedStep;
+        }
+
+        @Override
+        public ByteBuffer block() {
+            ByteBuffer block = ByteBuffer.allocate(length);
+            try {
+                while (block.hasRemaining()) {
+                    if (spill.read(block, offset + block.position()) < 0) {
+                        throw new IOException("spill file ends before chunk at " + offset);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return block.flip();
+        }
+
+        @Override
+        public long step() {
+            return evictedStep;
+        }
+
+        /**
+         * Reads the chunk back from the spill file. Is called by the TileStorage, possibly from any thread.
+         */
+        @Override
+        public Chunk load() {
+            ByteBuffer block = block();
+            release(offset, length);
+            Chunk chunk = ChunkCodec.decode(block, grid.getScent());
+            grid.getScent().decay(chunk, grid.getStep() - evictedStep);
+            return chunk;
+        }
+    }
+
+    /**
+     * Returns the offset of a free slot with at least the given size.
+     */
+    private synchronized long allocate(int length) {
+        for (Map.Entry<Long, Long> slot : free.entrySet()) {
+            long offset = slot.getKey();
+            long capacity = slot.getValue();
+            if (capacity >= length) {
+                free.remove(offset);
+                if (capacity > length) {
+                    free.put(offset + length, capacity - length);
+                }
+                return offset;
+            }
+        }
+        long offset = end;
+        end += length;
+        return offset;
+    }
+
+    /**
+     * Frees a slot and merges it with the free slots next to it. Free space at the end shortens the file.
+     */
+    private synchronized void release(long offset, int length) {
+        long start = offset;
+        long capacity = length;
+        Map.Entry<Long, Long> before = free.floorEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            free.remove(before.getKey());
+            start = before.getKey();
+            capacity += before.getValue();
+        }
+        Long after = free.get(offset + length);
+        if (after != null) {
+            free.remove(offset + length);
+            capacity += after;
+        }
+
+        if (start + capacity == end) {
+            end = start;
+            try {
+                spill.truncate(end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            free.put(start, capacity);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+// Modularisierungseinheit: Klasse
+
+// Plans the strips at the border of a Grid in the background before the ants reach them.
+// From time to time it looks at the ants close to every border: if ants are heading towards a border,
+// the strip behind it is planned on a worker thread. When the Grid grows, it takes the finished plan
+// instead of generating the strip itself, so growing only costs applying the plan.
+// A plan only depends on the seed and the strip, so the simulation is the same whether a plan was prepared,
+// is still running (then the Grid waits for it) or was never requested (then the Grid plans it itself).
+public class ChunkPrefetcher {
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int BOTTOM = 2;
+    public static final int TOP = 3;
+
+    // width of a new strip
+    public static final int STRIP_SIZE = 20;
+
+    // ants closer than this to a border count as approaching it if they are heading towards it
+    private static final int LOOKAHEAD = 2 * STRIP_SIZE;
+
+    // shared by all Grids, the threads do not keep the program alive
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                Thread thread = new Thread(runnable, "chunk-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // requested strip per side
+    private record Request(Vector startPoint, Vector endPoint, CompletableFuture<StripPlan> plan) {
+
+        /**
+         * @param strip {start point, end point} of a strip, must be != null
+         * @return true if this request plans exactly this strip
+         */
+        boolean isFor(Vector[] strip) {
+            return startPoint.equals(strip[0]) && endPoint.equals(strip[1]);
+        }
+    }
+
+    private final BiFunction<Vector, Vector, StripPlan> planner;
+    private final Request[] requests = new Request[4];
+
+    /**
+     * Initializes a prefetcher.
+     *
+     * @param planner Plans the strip between a start and an end point, must be != null, may be called from any thread
+     */
+    public ChunkPrefetcher(BiFunction<Vector, Vector, StripPlan> planner) {
+        this.planner = planner;
+    }
+
+    /**
+     * Returns the next strip of a side of the world.
+     *
+     * @param side       LEFT, RIGHT, BOTTOM or TOP
+     * @param startPoint Current start point of the world, must be != null
+     * @param endPoint   Current end point of the world, must be != null
+     * @return {start point, end point} of the strip, is != null
+     */
+    public static Vector[] strip(int side, Vector startPoint, Vector endPoint) {
+        return switch (side) {
+            case LEFT -> new Vector[]{new Vector(startPoint.getX() - STRIP_SIZE, startPoint.getY()), new Vector(startPoint.getX(), endPoint.getY())};
+            case RIGHT -> new Vector[]{new Vector(endPoint.getX(), startPoint.getY()), new Vector(endPoint.getX() + STRIP_SIZE, endPoint.getY())};
+            case BOTTOM -> new Vector[]{new Vector(startPoint.getX(), startPoint.getY() - STRIP_SIZE), new Vector(endPoint.getX(), startPoint.getY())};
+            default -> new Vector[]{new Vector(startPoint.getX(), endPoint.getY()), new Vector(endPoint.getX(), endPoint.getY() + STRIP_SIZE)};
+        };
+    }
+
+    /**
+     * Requests the next strip of every side which ants are approaching.
+     * An ant approaches a side if it is at most LOOKAHEAD cells away from it and its heading points towards it.
+     * Must be called from the thread which updates the Grid.
+     *
+     * @param ants       Ants of the Grid, must be != null
+     * @param startPoint Current start point of the world, must be != null
+     * @param endPoint   Current end point of the world, must be != null
+     */
+    public void predict(AntTable ants, Vector startPoint, Vector endPoint) {
+        int[] approaching = new int[requests.length];
+        for (int slot = 0; slot < ants.size(); slot++) {
+            int x = ants.getX(slot);
+            int y = ants.getY(slot);
+            int directionX = Heading.DX[ants.getHeading(slot)];
+            int directionY = Heading.DY[ants.getHeading(slot)];
+            if (directionX < 0 && x - startPoint.getX() < LOOKAHEAD) {
+                approaching[LEFT]++;
+            } else if (directionX > 0 && endPoint.getX() - x < LOOKAHEAD) {
+                approaching[RIGHT]++;
+            }
+            if (directionY < 0 && y - startPoint.getY() < LOOKAHEAD) {
+                approaching[BOTTOM]++;
+            } else if (directionY > 0 && endPoint.getY() - y < LOOKAHEAD) {
+                approaching[TOP]++;
+            }
+        }
+
+        for (int side = 0; side < requests.length; side++) {
+            if (approaching[side] > 0) {
+                request(side, strip(side, startPoint, endPoint));
+            }
+        }
+    }
+
+    /**
+     * Returns the plan of a strip, either the prepared one or a new one.
+     * Must be called from the thread which updates the Grid.
+     *
+     * @param side  Side of the strip, LEFT, RIGHT, BOTTOM or TOP
+     * @param strip {start point, end point} of the strip, must be != null
+     * @return StripPlan for the strip, is != null
+     */
+    public StripPlan take(int side, Vector[] strip) {
+        Request request = requests[side];
+        requests[side] = null;
+        if (request != null && request.isFor(strip)) {
+            return request.plan().join();
+        }
+        if (request != null) {
+            request.plan().cancel(false);
+        }
+        return planner.apply(strip[0], strip[1]);
+    }
+
+    /**
+     * Starts planning a strip unless it is already requested. An older request of the side is dropped.
+     */
+    private void request(int side, Vector[] strip) {
+        Request request = requests[side];
+        if (request != null && request.isFor(strip)) {
+            return;
+        }
+        if (request != null) {
+            request.plan().cancel(false);
+        }
+        requests[side] = new Request(strip[0], strip[1],
+                CompletableFuture.supplyAsync(() -> planner.apply(strip[0], strip[1]), WORKERS));
+    }
+}
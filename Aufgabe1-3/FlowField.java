@@ -0,0 +1,344 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+// Modularisierungseinheit: Klasse
+
+// Distance of every cell of a rectangle of chunks to one nest, counted in ant moves around obstacles
+// (breadth-first search). A returning ant moves to the neighbour with the smaller distance, so it walks around
+// obstacles instead of getting stuck behind them. The rectangle only covers the region of the nest and its ants,
+// so the size of a field does not depend on the size of the world. A field is immutable and can be read from
+// any thread.
+// When the rectangle only grows and the obstacles in the old part stay the same, the new field continues the
+// search of the old one from its border instead of starting again at the nest (see recompute).
+public class FlowField {
+    // distance of cells which cannot be reached from the nest or lie outside the rectangle
+    public static final int UNREACHABLE = -1;
+
+    // longs per chunk in an obstacle mask
+    private static final int MASK_LONGS = Chunk.CELLS / Long.SIZE;
+
+    /**
+     * Obstacles of a rectangle of chunks, the input of a FlowField.
+     *
+     * @param chunkX    X coordinate of the lower left chunk
+     * @param chunkY    Y coordinate of the lower left chunk
+     * @param columns   Amount of chunks in x direction, must be > 0
+     * @param rows      Amount of chunks in y direction, must be > 0
+     * @param obstacles Obstacle mask per chunk (see Chunk.getObstacles), row-major, null for chunks without
+     *                  known obstacles, must be != null and must not be changed
+     */
+    public record Area(int chunkX, int chunkY, int columns, int rows, long[][] obstacles) {
+
+        /**
+         * Reads the obstacle masks of a rectangle of chunks. Nothing is loaded, pending chunks use the mask
+         * they had when they were unloaded (see TileStorage.getObstacles).
+         * Must be called from the thread which updates the Grid.
+         *
+         * @param tiles     Storage of the world, must be != null
+         * @param minChunkX X coordinate of the lower left chunk
+         * @param minChunkY Y coordinate of the lower left chunk
+         * @param maxChunkX X coordinate of the upper right chunk, must be >= minChunkX
+         * @param maxChunkY Y coordinate of the upper right chunk, must be >= minChunkY
+         * @return Area, is != null
+         */
+        public static Area of(TileStorage tiles, int minChunkX, int minChunkY, int maxChunkX, int maxChunkY) {
+            int columns = maxChunkX - minChunkX + 1;
+            int rows = maxChunkY - minChunkY + 1;
+            long[][] obstacles = new long[columns * rows][];
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    obstacles[row * columns + column] = tiles.getObstacles(minChunkX + column, minChunkY + row);
+                }
+            }
+            return new Area(minChunkX, minChunkY, columns, rows, obstacles);
+        }
+
+        /**
+         * @param other Area, must be != null
+         * @return true if both Areas cover the same chunks with the same obstacles
+         */
+        public boolean sameAs(Area other) {
+            return chunkX == other.chunkX && chunkY == other.chunkY && columns == other.columns
+                    && rows == other.rows && Arrays.deepEquals(obstacles, other.obstacles);
+        }
+
+        /**
+         * @param other Area, must be != null
+         * @return true if this Area covers all chunks of the other one and they have the same obstacles here
+         */
+        public boolean contains(Area other) {
+            int column = other.chunkX - chunkX;
+            int row = other.chunkY - chunkY;
+            if (column < 0 || row < 0 || column + other.columns > columns || row + other.rows > rows) {
+                return false;
+            }
+            for (int y = 0; y < other.rows; y++) {
+                for (int x = 0; x < other.columns; x++) {
+                    if (!Arrays.equals(obstacles[(row + y) * columns + column + x], other.obstacles[y * other.columns + x])) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return Width of the rectangle in cells
+         */
+        public int width() {
+            return columns << Chunk.SHIFT;
+        }
+
+        /**
+         * @return Height of the rectangle in cells
+         */
+        public int height() {
+            return rows << Chunk.SHIFT;
+        }
+
+        /**
+         * @param x X coordinate relative to the lower left corner, in [0; width())
+         * @param y Y coordinate relative to the lower left corner, in [0; height())
+         * @return true if there is an obstacle at the position
+         */
+        private boolean isBlocked(int x, int y) {
+            long[] mask = obstacles[(y >> Chunk.SHIFT) * columns + (x >> Chunk.SHIFT)];
+            if (mask == null) {
+                return false;
+            }
+            int cell = ((y & Chunk.MASK) << Chunk.SHIFT) | (x & Chunk.MASK);
+            return (mask[cell >> 6] & (1L << cell)) != 0;
+        }
+
+        /**
+         * Reads an Area which was written by write.
+         *
+         * @param buffer Buffer positioned at the Area, must be != null
+         * @return Area, is != null
+         */
+        public static Area read(ByteBuffer buffer) {
+            int chunkX = buffer.getInt();
+            int chunkY = buffer.getInt();
+            int columns = buffer.getInt();
+            int rows = buffer.getInt();
+            long[][] obstacles = new long[columns * rows][];
+            for (int i = 0; i < obstacles.length; i++) {
+                if (buffer.get() != 0) {
+                    obstacles[i] = new long[MASK_LONGS];
+                    for (int j = 0; j < MASK_LONGS; j++) {
+                        obstacles[i][j] = buffer.getLong();
+                    }
+                }
+            }
+            return new Area(chunkX, chunkY, columns, rows, obstacles);
+        }
+
+        /**
+         * @return amount of bytes write needs, is > 0
+         */
+        public int bytes() {
+            int bytes = 4 * Integer.BYTES + obstacles.length;
+            for (long[] mask : obstacles) {
+                if (mask != null) {
+                    bytes += MASK_LONGS * Long.BYTES;
+                }
+            }
+            return bytes;
+        }
+
+        /**
+         * Writes this Area.
+         *
+         * @param buffer Buffer with at least bytes() remaining, must be != null
+         */
+        public void write(ByteBuffer buffer) {
+            buffer.putInt(chunkX).putInt(chunkY).putInt(columns).putInt(rows);
+            for (long[] mask : obstacles) {
+                buffer.put((byte) (mask == null ? 0 : 1));
+                if (mask != null) {
+                    for (long word : mask) {
+                        buffer.putLong(word);
+                    }
+                }
+            }
+        }
+    }
+
+    private final Area area;
+    private final Vector nest;
+    private final int[] distances;
+
+    private FlowField(Area area, Vector nest, int[] distances) {
+        this.area = area;
+        this.nest = nest;
+        this.distances = distances;
+    }
+
+    /**
+     * Computes the distances of all cells of an Area to a nest.
+     * Ants move to all 8 neighbours, so every move counts 1. Obstacles cannot be entered.
+     *
+     * @param area Obstacles, must be != null
+     * @param nest Position of the nest, must be != null
+     * @return FlowField, is != null
+     */
+    public static FlowField compute(Area area, Vector nest) {
+        int width = area.width();
+        int height = area.height();
+        int[] distances = new int[width * height];
+        Arrays.fill(distances, UNREACHABLE);
+        FlowField field = new FlowField(area, nest, distances);
+
+        int start = field.index(nest.getX(), nest.getY());
+        if (start < 0 || area.isBlocked(start % width, start / width)) {
+            return field;
+        }
+        // the queue never holds a cell twice, so one slot per cell is enough
+        int[] queue = new int[width * height];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        distances[start] = 0;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width;
+            int y = cell / width;
+            for (int heading = 0; heading < Heading.COUNT; heading++) {
+                int nx = x + Heading.DX[heading];
+                int ny = y + Heading.DY[heading];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                    continue;
+                }
+                int next = ny * width + nx;
+                if (distances[next] == UNREACHABLE && !area.isBlocked(nx, ny)) {
+                    distances[next] = distances[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Returns a field for an Area and a nest, equal to the one compute returns.
+     * This field is returned if it was computed for the same Area and nest. If the Area only grew around this one
+     * with the same obstacles, the known distances are kept and the search continues from the border of this field.
+     * Otherwise the field is computed again.
+     *
+     * @param area Obstacles, must be != null
+     * @param nest Position of the nest, must be != null
+     * @return FlowField, is != null
+     */
+    public FlowField recompute(Area area, Vector nest) {
+        if (!this.nest.equals(nest)) {
+            return compute(area, nest);
+        }
+        if (this.area.sameAs(area)) {
+            return this;
+        }
+        if (!area.contains(this.area) || index(nest.getX(), nest.getY()) < 0) {
+            return compute(area, nest);
+        }
+        return grow(area);
+    }
+
+    /**
+     * Continues the search of this field in a larger Area which contains this one with the same obstacles.
+     * Distances inside this field stay valid or get smaller, because only cells were added. Every path through
+     * the new cells leaves this field at its border, so the search starts there: the border cells of this field
+     * are taken in the order of their distance and every cell which gets a smaller distance is searched again.
+     */
+    private FlowField grow(Area larger) {
+        int width = larger.width();
+        int height = larger.height();
+        int[] grown = new int[width * height];
+        Arrays.fill(grown, UNREACHABLE);
+        int offsetX = (area.chunkX() - larger.chunkX()) << Chunk.SHIFT;
+        int offsetY = (area.chunkY() - larger.chunkY()) << Chunk.SHIFT;
+        int oldWidth = area.width();
+        int oldHeight = area.height();
+        for (int y = 0; y < oldHeight; y++) {
+            System.arraycopy(distances, y * oldWidth, grown, (y + offsetY) * width + offsetX, oldWidth);
+        }
+
+        // border cells of this field which are reachable, sorted by distance
+        long[] border = new long[2 * (oldWidth + oldHeight)];
+        int borderCount = 0;
+        for (int y = 0; y < oldHeight; y++) {
+            for (int x = 0; x < oldWidth; x += (y == 0 || y == oldHeight - 1) ? 1 : oldWidth - 1) {
+                int distance = distances[y * oldWidth + x];
+                if (distance != UNREACHABLE) {
+                    border[borderCount++] = ((long) distance << 32) | ((y + offsetY) * width + x + offsetX);
+                }
+            }
+        }
+        Arrays.sort(border, 0, borderCount);
+
+        // a breadth-first search whose queue is merged with the sorted border cells, so cells are taken
+        // in the order of their distance; a cell can be queued again when it gets a smaller distance,
+        // but it is never in the queue twice, so one slot per cell is enough
+        int[] queue = new int[width * height];
+        boolean[] queued = new boolean[width * height];
+        int head = 0;
+        int size = 0;
+        int next = 0;
+        while (size > 0 || next < borderCount) {
+            int cell;
+            if (next < borderCount && (size == 0 || (int) (border[next] >>> 32) <= grown[queue[head]])) {
+                cell = (int) border[next++];
+            } else {
+                cell = queue[head];
+                head = head + 1 == queue.length ? 0 : head + 1;
+                size--;
+                queued[cell] = false;
+            }
+            int x = cell % width;
+            int y = cell / width;
+            int distance = grown[cell] + 1;
+            for (int heading = 0; heading < Heading.COUNT; heading++) {
+                int nx = x + Heading.DX[heading];
+                int ny = y + Heading.DY[heading];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                    continue;
+                }
+                int neighbour = ny * width + nx;
+                if ((grown[neighbour] == UNREACHABLE || grown[neighbour] > distance) && !larger.isBlocked(nx, ny)) {
+                    grown[neighbour] = distance;
+                    if (!queued[neighbour]) {
+                        queued[neighbour] = true;
+                        queue[(head + size++) % queue.length] = neighbour;
+                    }
+                }
+            }
+        }
+        return new FlowField(larger, nest, grown);
+    }
+
+    /**
+     * @return Area the field was computed for, is != null
+     */
+    public Area getArea() {
+        return area;
+    }
+
+    /**
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return amount of moves to the nest or UNREACHABLE
+     */
+    public int getDistance(int x, int y) {
+        int index = index(x, y);
+        return index < 0 ? UNREACHABLE : distances[index];
+    }
+
+    /**
+     * @return index of a world position in the Area or -1 if it is outside
+     */
+    private int index(int x, int y) {
+        int dx = x - (area.chunkX() << Chunk.SHIFT);
+        int dy = y - (area.chunkY() << Chunk.SHIFT);
+        if (dx < 0 || dy < 0 || dx >= area.width() || dy >= area.height()) {
+            return -1;
+        }
+        return dy * area.width() + dx;
+    }
+}
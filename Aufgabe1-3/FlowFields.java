@@ -0,0 +1,276 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+// Modularisierungseinheit: Klasse
+
+// Keeps a FlowField per nest and recomputes them in the background when they are outdated.
+// Every INTERVAL updates the region of every nest is determined: the chunks of the nest and of its ants plus a
+// margin. A region which still fits into the current field of the nest and is at least half as large keeps the
+// field's rectangle, so ants moving back and forth do not cause new fields. If a region or the obstacles in it
+// changed, or chunks or nests were added since the last check (see invalidate), a request reads the obstacle masks
+// of the regions and computes the fields on a worker thread. Fields whose region did not change are kept, fields
+// whose region only grew continue the search of the old field (see FlowField.recompute), all others are computed
+// again from the nest.
+// The new fields are used exactly DELAY updates after the request (the Grid waits for them if they are late),
+// until then the old ones stay in use. So the simulation does not depend on how fast the workers are.
+// Outside its region a field knows no distances, there ants fall back to heading towards the nest directly.
+public class FlowFields {
+    // updates between a request and the use of its fields
+    public static final int DELAY = 8;
+
+    // minimum amount of updates between two requests
+    private static final int INTERVAL = 32;
+
+    // chunks around the ants of a nest which its field covers as well,
+    // enough for the updates until the next fields are used, because an ant moves one cell per update
+    private static final int MARGIN = 2;
+
+    // a field keeps its rectangle while the region of its nest has at least 1 / SHRINK of its chunks
+    private static final int SHRINK = 2;
+
+    // shared by all Grids, the threads do not keep the program alive
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                Thread thread = new Thread(runnable, "flow-field");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // fields which are computed for some nests, one Area per nest
+    private record Request(FlowField.Area[] areas, int[] layers, long readyStep, CompletableFuture<FlowField[]> fields) {
+
+        private boolean sameAs(FlowField.Area[] otherAreas, int[] otherLayers) {
+            if (!Arrays.equals(layers, otherLayers)) {
+                return false;
+            }
+            for (int i = 0; i < areas.length; i++) {
+                if (!areas[i].sameAs(otherAreas[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final PheromoneField scent;
+
+    // field per layer index, null for nests without a field, read by the ants in parallel
+    private volatile FlowField[] fields = new FlowField[0];
+    private Request installed;
+    private Request pending;
+
+    // true if the nests changed since the last request
+    private boolean changed = true;
+    private long lastRequest = -INTERVAL;
+
+    /**
+     * Initializes the flow fields of a Grid, there are none until the first request is ready.
+     *
+     * @param scent Field which knows the nest of every layer, must be != null
+     */
+    public FlowFields(PheromoneField scent) {
+        this.scent = scent;
+    }
+
+    /**
+     * Returns the FlowField of a nest.
+     *
+     * @param layer Layer index of the nest
+     * @return FlowField or null if there is none yet
+     */
+    public FlowField get(int layer) {
+        FlowField[] current = fields;
+        return layer < current.length ? current[layer] : null;
+    }
+
+    /**
+     * Makes the next check request new fields, e.g. after a nest or new chunks were added.
+     */
+    public void invalidate() {
+        changed = true;
+    }
+
+    /**
+     * Installs the fields which are due and requests new ones if the regions of the nests or their obstacles changed.
+     * Must be called at the start of every update by the thread which updates the Grid.
+     *
+     * @param tiles Storage of the world, must be != null
+     * @param ants  Table of the ants, must be != null
+     * @param nests Living nests, must be != null
+     * @param step  Current step of the Grid
+     */
+    public void update(TileStorage tiles, AntTable ants, List<Nest> nests, long step) {
+        if (pending != null && step >= pending.readyStep()) {
+            install(pending);
+            pending = null;
+        }
+        if (pending == null && step - lastRequest >= INTERVAL) {
+            int[] layers = nests.stream().mapToInt(Nest::getIndex).toArray();
+            FlowField.Area[] areas = areasOf(tiles, ants, layers);
+            if (changed || installed == null || !installed.sameAs(areas, layers)) {
+                pending = request(areas, layers, step + DELAY);
+            }
+            changed = false;
+            lastRequest = step;
+        }
+    }
+
+    /**
+     * @return amount of bytes write needs, is > 0
+     */
+    public int bytes() {
+        return 1 + Long.BYTES + 2 * (1 + Long.BYTES + Integer.BYTES)
+                + requestBytes(installed) + requestBytes(pending);
+    }
+
+    /**
+     * Writes what is needed to continue exactly like this, e.g. into a Snapshot.
+     * The fields themselves are computed again from their Areas.
+     *
+     * @param buffer Buffer with at least bytes() remaining, must be != null
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.put((byte) (changed ? 1 : 0)).putLong(lastRequest);
+        writeRequest(buffer, installed);
+        writeRequest(buffer, pending);
+    }
+
+    /**
+     * Restores the state written by write. The installed fields are computed right away.
+     * The nests of all layers must already be registered in the PheromoneField.
+     *
+     * @param buffer Buffer positioned at the state, must be != null
+     */
+    public void read(ByteBuffer buffer) {
+        changed = buffer.get() != 0;
+        lastRequest = buffer.getLong();
+        Request restored = readRequest(buffer);
+        if (restored != null) {
+            install(restored);
+        }
+        pending = readRequest(buffer);
+    }
+
+    /**
+     * Determines the region of every nest: the bounding box of the chunk of the nest and the chunks of its ants,
+     * grown by MARGIN chunks on every side. The rectangle of the current field is kept if the region fits into it
+     * and is not much smaller.
+     */
+    private FlowField.Area[] areasOf(TileStorage tiles, AntTable ants, int[] layers) {
+        int layerCount = scent.getLayerCount();
+        int[] minX = new int[layerCount];
+        int[] minY = new int[layerCount];
+        int[] maxX = new int[layerCount];
+        int[] maxY = new int[layerCount];
+        boolean[] alive = new boolean[layerCount];
+        for (int layer : layers) {
+            Vector position = scent.getNest(layer).getPosition();
+            minX[layer] = maxX[layer] = position.getX() >> Chunk.SHIFT;
+            minY[layer] = maxY[layer] = position.getY() >> Chunk.SHIFT;
+            alive[layer] = true;
+        }
+        for (int slot = 0; slot < ants.size(); slot++) {
+            int layer = ants.getNestIndex(slot);
+            if (alive[layer]) {
+                int chunkX = ants.getX(slot) >> Chunk.SHIFT;
+                int chunkY = ants.getY(slot) >> Chunk.SHIFT;
+                minX[layer] = Math.min(minX[layer], chunkX);
+                minY[layer] = Math.min(minY[layer], chunkY);
+                maxX[layer] = Math.max(maxX[layer], chunkX);
+                maxY[layer] = Math.max(maxY[layer], chunkY);
+            }
+        }
+
+        FlowField.Area[] areas = new FlowField.Area[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+            int layer = layers[i];
+            int fromX = minX[layer] - MARGIN;
+            int fromY = minY[layer] - MARGIN;
+            int toX = maxX[layer] + MARGIN;
+            int toY = maxY[layer] + MARGIN;
+            FlowField field = get(layer);
+            if (field != null) {
+                FlowField.Area current = field.getArea();
+                int currentToX = current.chunkX() + current.columns() - 1;
+                int currentToY = current.chunkY() + current.rows() - 1;
+                if (fromX >= current.chunkX() && fromY >= current.chunkY() && toX <= currentToX && toY <= currentToY
+                        && (long) (toX - fromX + 1) * (toY - fromY + 1) * SHRINK >= (long) current.columns() * current.rows()) {
+                    fromX = current.chunkX();
+                    fromY = current.chunkY();
+                    toX = currentToX;
+                    toY = currentToY;
+                }
+            }
+            areas[i] = FlowField.Area.of(tiles, fromX, fromY, toX, toY);
+        }
+        return areas;
+    }
+
+    private Request request(FlowField.Area[] areas, int[] layers, long readyStep) {
+        Vector[] positions = new Vector[layers.length];
+        FlowField[] previous = new FlowField[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+            positions[i] = scent.getNest(layers[i]).getPosition();
+            previous[i] = get(layers[i]);
+        }
+        return new Request(areas, layers, readyStep, CompletableFuture.supplyAsync(() -> {
+            FlowField[] computed = new FlowField[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                computed[i] = previous[i] == null
+                        ? FlowField.compute(areas[i], positions[i])
+                        : previous[i].recompute(areas[i], positions[i]);
+            }
+            return computed;
+        }, WORKERS));
+    }
+
+    private void install(Request request) {
+        FlowField[] computed = request.fields().join();
+        FlowField[] next = new FlowField[scent.getLayerCount()];
+        for (int i = 0; i < request.layers().length; i++) {
+            next[request.layers()[i]] = computed[i];
+        }
+        fields = next;
+        installed = request;
+    }
+
+    private static int requestBytes(Request request) {
+        if (request == null) {
+            return 0;
+        }
+        int bytes = request.layers().length * Integer.BYTES;
+        for (FlowField.Area area : request.areas()) {
+            bytes += area.bytes();
+        }
+        return bytes;
+    }
+
+    private static void writeRequest(ByteBuffer buffer, Request request) {
+        buffer.put((byte) (request == null ? 0 : 1));
+        if (request == null) {
+            return;
+        }
+        buffer.putLong(request.readyStep()).putInt(request.layers().length);
+        for (int i = 0; i < request.layers().length; i++) {
+            buffer.putInt(request.layers()[i]);
+            request.areas()[i].write(buffer);
+        }
+    }
+
+    private Request readRequest(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        long readyStep = buffer.getLong();
+        int[] layers = new int[buffer.getInt()];
+        FlowField.Area[] areas = new FlowField.Area[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = buffer.getInt();
+            areas[i] = FlowField.Area.read(buffer);
+        }
+        return request(areas, layers, readyStep);
+    }
+}
@@ -18,6 +18,24 @@ public class FoodSource extends Tile {
         super(position);
     }
 
+    /**
+     * Initializes a FoodSource with the given amount of left food, e.g. from a Snapshot.
+     *
+     * @param position   Position of FoodSource, must be != null
+     * @param foodAmount Amount of left food
+     */
+    public FoodSource(Vector position, int foodAmount) {
+        super(position);
+        this.foodAmount = foodAmount;
+    }
+
+    /**
+     * @return amount of left food
+     */
+    public int getFoodAmount() {
+        return foodAmount;
+    }
+
     /**
      * Returns a static stink value.
      *
@@ -28,6 +46,16 @@ public class FoodSource extends Tile {
         return 100;
     }
 
+    /**
+     * The scent on a FoodSource does not decay.
+     *
+     * @return 1
+     */
+    @Override
+    public float getStinkDeletionRate() {
+        return 1f;
+    }
+
     /**
      * Returns the color of a FoodSource.
      *
@@ -35,7 +63,17 @@ public class FoodSource extends Tile {
      */
     @Override
     public Color getColor() {
-        return new Color(color.getRed(), color.getGreen(), color.getBlue());
+        return color;
+    }
+
+    /**
+     * The amount of food only changes when an Ant takes some, and the Ant removes an empty FoodSource itself.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isStatic() {
+        return true;
     }
 
     /**
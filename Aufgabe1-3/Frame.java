@@ -0,0 +1,199 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+// Modularisierungseinheit: Klasse
+
+// One rasterized picture of a Grid with one pixel per cell.
+// A frame is written by the simulation thread and, after it was published, only read by the render thread
+// until it is given back with FrameBuffer.recycle.
+// A frame remembers which version of every chunk it shows and where it shows ants,
+// so the next rasterization into it only has to redo what changed since.
+public final class Frame {
+    private final BufferedImage image;
+    private final int[] pixels;
+
+    // world rectangle which is covered by the image
+    private final int originX;
+    private final int originY;
+    private final int width;
+    private final int height;
+
+    // amount of updates of the Grid when the frame was rasterized
+    private long step;
+
+    // chunk and version which were rasterized per chunk of the rectangle, row-major
+    private final int chunkOriginX;
+    private final int chunkOriginY;
+    private final int chunkColumns;
+    private final Chunk[] renderedChunks;
+    private final int[] renderedVersions;
+
+    // pixels which show an ant instead of their cell
+    private int[] antPixels = new int[64];
+    private int antPixelCount;
+
+    /**
+     * Initializes an empty frame.
+     *
+     * @param originX World x coordinate of the left column
+     * @param originY World y coordinate of the top row
+     * @param width   Width in cells, must be > 0
+     * @param height  Height in cells, must be > 0
+     */
+    public Frame(int originX, int originY, int width, int height) {
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        this.chunkOriginX = originX >> Chunk.SHIFT;
+        this.chunkOriginY = originY >> Chunk.SHIFT;
+        this.chunkColumns = ((originX + width - 1) >> Chunk.SHIFT) - chunkOriginX + 1;
+        int chunkRows = ((originY + height - 1) >> Chunk.SHIFT) - chunkOriginY + 1;
+        this.renderedChunks = new Chunk[chunkColumns * chunkRows];
+        this.renderedVersions = new int[chunkColumns * chunkRows];
+    }
+
+    /**
+     * Fills the whole image with one color, afterwards it shows no chunk.
+     *
+     * @param argb Color as ARGB value
+     */
+    public void clear(int argb) {
+        Arrays.fill(pixels, argb);
+        Arrays.fill(renderedChunks, null);
+        antPixelCount = 0;
+    }
+
+    /**
+     * Checks if the area of a chunk in the image is up to date.
+     *
+     * @param chunkX X coordinate of the chunk, must be inside the rectangle
+     * @param chunkY Y coordinate of the chunk, must be inside the rectangle
+     * @param chunk  Chunk which is there now, null if there is none
+     * @return true if the same chunk in the same version was rasterized, or no chunk and there is none
+     */
+    public boolean isRendered(int chunkX, int chunkY, Chunk chunk) {
+        int index = chunkIndex(chunkX, chunkY);
+        return renderedChunks[index] == chunk && (chunk == null || renderedVersions[index] == chunk.getVersion());
+    }
+
+    /**
+     * Records that the area of a chunk was rasterized.
+     *
+     * @param chunkX X coordinate of the chunk, must be inside the rectangle
+     * @param chunkY Y coordinate of the chunk, must be inside the rectangle
+     * @param chunk  Chunk which was rasterized, null if the area was filled with the background
+     */
+    public void setRendered(int chunkX, int chunkY, Chunk chunk) {
+        int index = chunkIndex(chunkX, chunkY);
+        renderedChunks[index] = chunk;
+        renderedVersions[index] = chunk == null ? 0 : chunk.getVersion();
+    }
+
+    /**
+     * Records a pixel which shows an ant, it has to be restored before the ants are drawn again.
+     *
+     * @param pixel Index in getPixels()
+     */
+    public void addAntPixel(int pixel) {
+        if (antPixelCount == antPixels.length) {
+            antPixels = Arrays.copyOf(antPixels, antPixelCount * 2);
+        }
+        antPixels[antPixelCount++] = pixel;
+    }
+
+    /**
+     * @return amount of pixels which show an ant, is >= 0
+     */
+    public int getAntPixelCount() {
+        return antPixelCount;
+    }
+
+    /**
+     * @param i Index in [0; getAntPixelCount())
+     * @return index of the pixel in getPixels()
+     */
+    public int getAntPixel(int i) {
+        return antPixels[i];
+    }
+
+    /**
+     * Forgets all pixels which show an ant.
+     */
+    public void clearAntPixels() {
+        antPixelCount = 0;
+    }
+
+    private int chunkIndex(int chunkX, int chunkY) {
+        return (chunkY - chunkOriginY) * chunkColumns + (chunkX - chunkOriginX);
+    }
+
+    /**
+     * @param originX World x coordinate of the left column
+     * @param originY World y coordinate of the top row
+     * @param width   Width in cells
+     * @param height  Height in cells
+     * @return true if this frame covers exactly the given rectangle
+     */
+    public boolean covers(int originX, int originY, int width, int height) {
+        return this.originX == originX && this.originY == originY && this.width == width && this.height == height;
+    }
+
+    /**
+     * @return Image with one pixel per cell, is != null
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * @return ARGB values of the image, row by row, is != null
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @return World x coordinate of the left column of the image
+     */
+    public int getOriginX() {
+        return originX;
+    }
+
+    /**
+     * @return World y coordinate of the top row of the image
+     */
+    public int getOriginY() {
+        return originY;
+    }
+
+    /**
+     * @return Width of the image in cells
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the image in cells
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return amount of updates of the Grid when the frame was rasterized
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * @param step Amount of updates of the Grid, must be >= 0
+     */
+    public void setStep(long step) {
+        this.step = step;
+    }
+}
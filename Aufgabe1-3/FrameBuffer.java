@@ -0,0 +1,189 @@
+import java.awt.*;
+import java.util.concurrent.atomic.AtomicReference;
+// Modularisierungseinheit: Klasse
+
+// Rasterizes a Grid into frames with one pixel per cell.
+// The pixels are written directly into the int array of the image, chunk by chunk, without any draw calls.
+// The window only has to draw this image once per frame, scaled and moved by the current view.
+// A frame which is not shown anymore can be given back, so the next frame reuses its image.
+// A reused frame is only updated: chunks whose version did not change are skipped, chunks outside the view are
+// left as they are until they become visible, and only the cells which showed ants are restored.
+// So the cost of a frame follows the changes in the view, not the size of the world.
+public class FrameBuffer {
+    private static final Color BACKGROUND = Color.gray;
+
+    // world rectangle which is shown, with inclusive bounds
+    private record View(int minX, int minY, int maxX, int maxY) {
+    }
+
+    private final Grid grid;
+
+    // frame which was given back by the render thread and can be overwritten
+    private final AtomicReference<Frame> recycled = new AtomicReference<>();
+
+    // set by the window, everything is visible until then
+    private volatile View view = new View(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /**
+     * Initializes a FrameBuffer.
+     *
+     * @param grid Grid to rasterize, must be != null
+     */
+    public FrameBuffer(Grid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Sets the part of the world which is visible. Only this part is kept up to date in the next frames.
+     * May be called from any thread.
+     *
+     * @param minX Smallest visible x coordinate
+     * @param minY Smallest visible y coordinate
+     * @param maxX Biggest visible x coordinate, must be >= minX
+     * @param maxY Biggest visible y coordinate, must be >= minY
+     */
+    public void setView(int minX, int minY, int maxX, int maxY) {
+        view = new View(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Rasterizes the current state of the visible part of the Grid into a frame.
+     * Tiles with scent are drawn below ants, all other tiles above them.
+     * Must not be called while the Grid gets updated.
+     *
+     * @param step Amount of updates of the Grid, must be >= 0
+     * @return Frame which is not used by anyone else, is != null
+     */
+    public Frame render(long step) {
+        Frame frame = obtain(grid.getStartPoint(), grid.getEndPoint());
+        frame.setStep(step);
+        int[] pixels = frame.getPixels();
+        int width = frame.getWidth();
+        TileStorage tiles = grid.getTiles();
+
+        // the cells below the ants of the last rasterization show their tile again
+        for (int i = 0; i < frame.getAntPixelCount(); i++) {
+            int pixel = frame.getAntPixel(i);
+            Tile tile = tileAt(tiles, frame.getOriginX() + pixel % width, frame.getOriginY() + pixel / width);
+            pixels[pixel] = tile == null ? BACKGROUND.getRGB() : toRGB(tile.getColor());
+        }
+        frame.clearAntPixels();
+
+        View visible = view;
+        int fromX = Math.max(frame.getOriginX(), visible.minX());
+        int toX = Math.min(frame.getOriginX() + width - 1, visible.maxX());
+        int fromY = Math.max(frame.getOriginY(), visible.minY());
+        int toY = Math.min(frame.getOriginY() + frame.getHeight() - 1, visible.maxY());
+        if (fromX > toX || fromY > toY) {
+            return frame;
+        }
+
+        for (int chunkY = fromY >> Chunk.SHIFT; chunkY <= toY >> Chunk.SHIFT; chunkY++) {
+            for (int chunkX = fromX >> Chunk.SHIFT; chunkX <= toX >> Chunk.SHIFT; chunkX++) {
+                Chunk chunk = tiles.getLoadedChunk(chunkX << Chunk.SHIFT, chunkY << Chunk.SHIFT);
+                if (!frame.isRendered(chunkX, chunkY, chunk)) {
+                    renderChunk(frame, chunkX, chunkY, chunk);
+                    frame.setRendered(chunkX, chunkY, chunk);
+                }
+            }
+        }
+
+        AntTable ants = grid.getAntTable();
+        for (int slot = 0; slot < ants.size(); slot++) {
+            int x = ants.getX(slot);
+            int y = ants.getY(slot);
+            if (x < fromX || y < fromY || x > toX || y > toY) {
+                continue;
+            }
+            Tile tile = tileAt(tiles, x, y);
+            if (tile == null || !isAboveAnts(tile)) {
+                int pixel = (y - frame.getOriginY()) * width + (x - frame.getOriginX());
+                pixels[pixel] = ants.getAnt(slot).getColor().getRGB();
+                frame.addAntPixel(pixel);
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Gives back a frame which is not needed anymore, so the next render can reuse it.
+     * May be called from any thread.
+     *
+     * @param frame Frame, must be != null
+     */
+    public void recycle(Frame frame) {
+        recycled.set(frame);
+    }
+
+    /**
+     * Writes all cells of a chunk which lie inside the image, the background if there is no chunk.
+     */
+    private static void renderChunk(Frame frame, int chunkX, int chunkY, Chunk chunk) {
+        int originX = frame.getOriginX();
+        int originY = frame.getOriginY();
+        int width = frame.getWidth();
+        int[] pixels = frame.getPixels();
+        int chunkOriginX = chunkX << Chunk.SHIFT;
+        int chunkOriginY = chunkY << Chunk.SHIFT;
+        int fromX = Math.max(chunkOriginX, originX);
+        int toX = Math.min(chunkOriginX + Chunk.SIZE, originX + width);
+        int fromY = Math.max(chunkOriginY, originY);
+        int toY = Math.min(chunkOriginY + Chunk.SIZE, originY + frame.getHeight());
+
+        for (int y = fromY; y < toY; y++) {
+            int row = (y - originY) * width - originX;
+            for (int x = fromX; x < toX; x++) {
+                Tile tile = chunk == null ? null : chunk.get(Chunk.cellIndex(x, y));
+                pixels[row + x] = tile == null ? BACKGROUND.getRGB() : toRGB(tile.getColor());
+            }
+        }
+    }
+
+    /**
+     * @return Tile at a position in a loaded chunk or null
+     */
+    private static Tile tileAt(TileStorage tiles, int x, int y) {
+        Chunk chunk = tiles.getLoadedChunk(x, y);
+        return chunk == null ? null : chunk.get(Chunk.cellIndex(x, y));
+    }
+
+    /**
+     * Returns the recycled frame if it covers the Grid, otherwise a new one.
+     */
+    private Frame obtain(Vector startPoint, Vector endPoint) {
+        int width = endPoint.getX() - startPoint.getX() + 1;
+        int height = endPoint.getY() - startPoint.getY() + 1;
+        Frame frame = recycled.getAndSet(null);
+        if (frame != null && frame.covers(startPoint.getX(), startPoint.getY(), width, height)) {
+            return frame;
+        }
+        frame = new Frame(startPoint.getX(), startPoint.getY(), width, height);
+        frame.clear(BACKGROUND.getRGB());
+        return frame;
+    }
+
+    /**
+     * @param tile Tile, must be != null
+     * @return true for nests, food sources and obstacles
+     */
+    private static boolean isAboveAnts(Tile tile) {
+        return tile.getCurrentStink(null) > 1f;
+    }
+
+    /**
+     * Converts a color into an opaque ARGB value. Transparent colors are blended with the background.
+     *
+     * @param color Color, must be != null
+     * @return ARGB value
+     */
+    private static int toRGB(Color color) {
+        int alpha = color.getAlpha();
+        if (alpha == 255) {
+            return color.getRGB();
+        }
+        int red = (color.getRed() * alpha + BACKGROUND.getRed() * (255 - alpha)) / 255;
+        int green = (color.getGreen() * alpha + BACKGROUND.getGreen() * (255 - alpha)) / 255;
+        int blue = (color.getBlue() * alpha + BACKGROUND.getBlue() * (255 - alpha)) / 255;
+        return 0xff000000 | (red << 16) | (green << 8) | blue;
+    }
+}
@@ -1,4 +1,7 @@
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
 
 public class Generator {
     private final int nestCounter;
@@ -7,6 +10,7 @@ public class Generator {
     private final int obstacleCounter;
 
     private final Grid grid;
+    private final RandomGenerator random;
 
 
     // GOOD: Generator hat einen hohen Klassenzusammenhalt mit Grid aber eine schwache Objektkopplung.
@@ -14,95 +18,259 @@ public class Generator {
      * Initializes the Generator.
      *
      * @param grid            Grid, Grid != null
+     * @param random          Random stream for every decision of this generator, must be != null
      * @param nestCounter     Amount of nests which are getting generated. Must be >= 0
      * @param foodCounter     Amount of foodSources which are getting generated. Must be >= 0
      * @param antsPerNest     Amount of ants which are getting generated per nest. Must be >= 0
      * @param obstacleCounter Amount of ants which are getting generated per nest. Must be >= 0
      */
-    public Generator(Grid grid, int nestCounter, int foodCounter, int antsPerNest, int obstacleCounter) {
+    public Generator(Grid grid, RandomGenerator random, int nestCounter, int foodCounter, int antsPerNest, int obstacleCounter) {
         this.grid = grid;
+        this.random = random;
         this.nestCounter = nestCounter;
         this.foodCounter = foodCounter;
         this.antsPerNest = antsPerNest;
         this.obstacleCounter = obstacleCounter;
     }
 
-    /**
-     * Checks if a given point is in between a triangle.
-     *
-     * @param point1 Point1, Point1 != null
-     * @param point2 Point2, Point2 != null
-     * @param point3 Point3, Point3 != null
-     * @param x      X value of given Point
-     * @param y      Y value of given Point
-     * @return isInside of triangle
-     */
-    private static boolean isInside(Vector point1, Vector point2, Vector point3, int x, int y) {
-        double d1 = sign(new Vector(x, y), point1, point2);
-        double d2 = sign(new Vector(x, y), point2, point3);
-        double d3 = sign(new Vector(x, y), point3, point1);
+    // triangle of obstacles, the corners are inclusive like the edges
+    private record Triangle(int x1, int y1, int x2, int y2, int x3, int y3) {
+        private int minX() {
+            return Math.min(x1, Math.min(x2, x3));
+        }
 
-        boolean hasNeg = (d1 < 0) || (d2 < 0) || (d3 < 0);
-        boolean hasPos = (d1 > 0) || (d2 > 0) || (d3 > 0);
+        private int maxX() {
+            return Math.max(x1, Math.max(x2, x3));
+        }
 
-        return !(hasNeg && hasPos);
-    }
+        private int minY() {
+            return Math.min(y1, Math.min(y2, y3));
+        }
 
-    /**
-     * Calculates the point's orientation with respect to an edge.
-     *
-     * @param p1 First edge point, must be != null
-     * @param p2 Second edge point, must be != null
-     * @param p3 The point to check, must be != null
-     * @return The point's orientation.
-     */
-    private static double sign(Vector p1, Vector p2, Vector p3) {
-        return (p1.getX() - p3.getX()) * (p2.getY() - p3.getY()) - (p2.getX() - p3.getX()) * (p1.getY() - p3.getY());
+        private int maxY() {
+            return Math.max(y1, Math.max(y2, y3));
+        }
+
+        /**
+         * Marks the cells of one row of a chunk which are inside the triangle.
+         * A cell is inside if it is on the same side of all three edges or on an edge.
+         * Every edge is linear in x, so the inside of a row is one interval per orientation.
+         *
+         * @param y      World y coordinate of the row
+         * @param fromX  First world x coordinate of the chunk
+         * @param inside Cells of the chunk, must be != null
+         */
+        private void fillRow(int y, int fromX, boolean[] inside) {
+            int toX = fromX + Chunk.SIZE - 1;
+            int row = (y & Chunk.MASK) << Chunk.SHIFT;
+            for (int orientation = -1; orientation <= 1; orientation += 2) {
+                long[] interval = {Math.max(fromX, minX()), Math.min(toX, maxX())};
+                clip(interval, x1, y1, x2, y2, y, orientation);
+                clip(interval, x2, y2, x3, y3, y, orientation);
+                clip(interval, x3, y3, x1, y1, y, orientation);
+                for (long x = interval[0]; x <= interval[1]; x++) {
+                    inside[row | ((int) x & Chunk.MASK)] = true;
+                }
+            }
+        }
+
+        /**
+         * Shrinks an interval of a row to the x values where orientation * sign((x, y), a, b) >= 0.
+         */
+        private static void clip(long[] interval, int ax, int ay, int bx, int by, int y, int orientation) {
+            // sign((x, y), a, b) = (x - bx) * (ay - by) - (ax - bx) * (y - by) = slope * x + offset
+            long slope = (long) orientation * (ay - by);
+            long offset = (long) orientation * (-(long) bx * (ay - by) - (long) (ax - bx) * (y - by));
+            if (slope > 0) {
+                interval[0] = Math.max(interval[0], -Math.floorDiv(offset, slope));
+            } else if (slope < 0) {
+                interval[1] = Math.min(interval[1], Math.floorDiv(offset, -slope));
+            } else if (offset < 0) {
+                interval[1] = interval[0] - 1;
+            }
+        }
     }
 
     /**
      * Generates obstacles in a given area.
      * Obstacles are generated in a triangle form.
+     * First all triangles are drawn, then every chunk they touch is filled in parallel in a local array
+     * and all of its obstacles are added at once.
      *
      * @param startPoint Start Point of a rectangle, must be != null
      * @param endPoint   End Point of a rectangle, must be != nulll
      */
     private void generateObstacles(Vector startPoint, Vector endPoint) {
+        List<Triangle> triangles = new ArrayList<>();
         for (int i = 0; i < obstacleCounter; i++) {
-            int randomX = generateRandomNumberBetween(startPoint.getX(), endPoint.getX());
-            int randomY = generateRandomNumberBetween(startPoint.getY(), endPoint.getY());
+            Triangle triangle = drawTriangle(random, startPoint, endPoint);
 
-            int maxDistance = 30;
-            Vector point1 = new Vector(randomX, randomY);
-            Vector point2 = new Vector(generateRandomNumberBetween(randomX - maxDistance, randomX + maxDistance), generateRandomNumberBetween(randomY - maxDistance, randomY + maxDistance));
-            Vector point3 = new Vector(generateRandomNumberBetween(randomX - maxDistance, randomX + maxDistance), generateRandomNumberBetween(randomY - maxDistance, randomY + maxDistance));
-
-            Tile tile = grid.getMap().get(new Vector(randomX, randomY));
-            // should never be the case because obstacles are generated first
-            if (tile != null) {
+            // the triangle must not start on an existing tile
+            if (grid.getTiles().get(triangle.x1(), triangle.y1()) != null) {
                 i--;
                 continue;
             }
+            triangles.add(triangle);
+        }
+        if (triangles.isEmpty()) {
+            return;
+        }
+
+        // all chunks touched by a triangle, created in a fixed order
+        List<Chunk> chunks = new ArrayList<>();
+        for (int[] chunk : touchedChunks(triangles)) {
+            chunks.add(grid.getTiles().getOrCreateChunk(chunk[0] << Chunk.SHIFT, chunk[1] << Chunk.SHIFT));
+        }
+
+        // a single chunk or a single thread is not worth the handover to the pool
+        if (chunks.size() < 2 || grid.getPool().getParallelism() < 2) {
+            chunks.forEach(chunk -> fillChunk(chunk, triangles));
+        } else {
+            grid.getPool().submit(() -> chunks.parallelStream().forEach(chunk -> fillChunk(chunk, triangles))).join();
+        }
+    }
+
+    /**
+     * Draws a triangle which starts inside the given area, its other corners are at most 30 cells away.
+     */
+    private static Triangle drawTriangle(RandomGenerator random, Vector startPoint, Vector endPoint) {
+        int randomX = generateRandomNumberBetween(random, startPoint.getX(), endPoint.getX());
+        int randomY = generateRandomNumberBetween(random, startPoint.getY(), endPoint.getY());
+
+        int maxDistance = 30;
+        return new Triangle(randomX, randomY,
+                generateRandomNumberBetween(random, randomX - maxDistance, randomX + maxDistance), generateRandomNumberBetween(random, randomY - maxDistance, randomY + maxDistance),
+                generateRandomNumberBetween(random, randomX - maxDistance, randomX + maxDistance), generateRandomNumberBetween(random, randomY - maxDistance, randomY + maxDistance));
+    }
+
+    /**
+     * Returns the coordinates {chunkX, chunkY} of all chunks the triangles may cover, row by row.
+     */
+    private static List<int[]> touchedChunks(List<Triangle> triangles) {
+        int minChunkX = Integer.MAX_VALUE, minChunkY = Integer.MAX_VALUE;
+        int maxChunkX = Integer.MIN_VALUE, maxChunkY = Integer.MIN_VALUE;
+        for (Triangle triangle : triangles) {
+            minChunkX = Math.min(minChunkX, triangle.minX() >> Chunk.SHIFT);
+            minChunkY = Math.min(minChunkY, triangle.minY() >> Chunk.SHIFT);
+            maxChunkX = Math.max(maxChunkX, triangle.maxX() >> Chunk.SHIFT);
+            maxChunkY = Math.max(maxChunkY, triangle.maxY() >> Chunk.SHIFT);
+        }
+        List<int[]> chunks = new ArrayList<>();
+        for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                if (touches(triangles, chunkX, chunkY)) {
+                    chunks.add(new int[]{chunkX, chunkY});
+                }
+            }
+        }
+        return chunks;
+    }
 
-            // Find the boundaries of the rectangle that encloses the triangle
-            int minX = Math.min(point1.getX(), Math.min(point2.getX(), point3.getX()));
-            int maxX = Math.max(point1.getX(), Math.max(point2.getX(), point3.getX()));
-            int minY = Math.min(point1.getY(), Math.min(point2.getY(), point3.getY()));
-            int maxY = Math.max(point1.getY(), Math.max(point2.getY(), point3.getY()));
-
-            // Iterate over each grid point in the enclosing rectangle
-            for (int x = minX; x <= maxX; x++) {
-                for (int y = minY; y <= maxY; y++) {
-                    Vector position = new Vector(x, y);
-                    if (isInside(point1, point2, point3, x, y)) {
-                        if (grid.getMap().get(position) != null) {
-                            continue;
-                        }
-                        grid.getMap().put(position, new Obstacle(position));
+    /**
+     * @return true if the bounding box of any triangle overlaps the chunk
+     */
+    private static boolean touches(List<Triangle> triangles, int chunkX, int chunkY) {
+        for (Triangle triangle : triangles) {
+            if (triangle.minX() >> Chunk.SHIFT <= chunkX && chunkX <= triangle.maxX() >> Chunk.SHIFT
+                    && triangle.minY() >> Chunk.SHIFT <= chunkY && chunkY <= triangle.maxY() >> Chunk.SHIFT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rasterizes all triangles into one chunk and adds the obstacles to the empty cells of it.
+     */
+    private static void fillChunk(Chunk chunk, List<Triangle> triangles) {
+        chunk.setAllIfAbsent(obstaclesOf(chunk.getChunkX(), chunk.getChunkY(), triangles));
+    }
+
+    /**
+     * Rasterizes all triangles into one chunk.
+     *
+     * @return new Obstacle per covered cell index, null for all other cells
+     */
+    private static Tile[] obstaclesOf(int chunkX, int chunkY, List<Triangle> triangles) {
+        int fromX = chunkX << Chunk.SHIFT;
+        int fromY = chunkY << Chunk.SHIFT;
+        boolean[] inside = new boolean[Chunk.CELLS];
+        for (Triangle triangle : triangles) {
+            int startY = Math.max(fromY, triangle.minY());
+            int endY = Math.min(fromY + Chunk.SIZE - 1, triangle.maxY());
+            for (int y = startY; y <= endY; y++) {
+                triangle.fillRow(y, fromX, inside);
+            }
+        }
+
+        Tile[] obstacles = new Tile[Chunk.CELLS];
+        for (int cell = 0; cell < Chunk.CELLS; cell++) {
+            if (inside[cell]) {
+                obstacles[cell] = new Obstacle(new Vector(fromX + (cell & Chunk.MASK), fromY + (cell >> Chunk.SHIFT)));
+            }
+        }
+        return obstacles;
+    }
+
+    /**
+     * Plans obstacles and FoodSources of a strip at the border of the Grid without touching the Grid.
+     * Draws the same obstacles and FoodSources as generateTilesForChunk, but they only avoid each other:
+     * cells which are already used in the Grid are skipped when the plan is applied, FoodSources on them are
+     * drawn again from the same stream then (see StripPlan.apply).
+     * The plan only depends on the stream and the strip, so it can be made on any thread and in advance.
+     *
+     * @param random          Random stream of the strip, must be != null
+     * @param startPoint      Start Point of the strip, must be != null
+     * @param endPoint        End Point of the strip, must be != null
+     * @param foodCounter     Amount of foodSources, must be >= 0
+     * @param obstacleCounter Amount of obstacle triangles, must be >= 0
+     * @return StripPlan, is != null
+     */
+    public static StripPlan planStrip(RandomGenerator random, Vector startPoint, Vector endPoint, int foodCounter, int obstacleCounter) {
+        StripPlan plan = new StripPlan(random, startPoint, endPoint);
+        List<Triangle> triangles = new ArrayList<>();
+        for (int i = 0; i < obstacleCounter; i++) {
+            triangles.add(drawTriangle(random, startPoint, endPoint));
+        }
+        if (!triangles.isEmpty()) {
+            for (int[] chunk : touchedChunks(triangles)) {
+                for (Tile obstacle : obstaclesOf(chunk[0], chunk[1], triangles)) {
+                    if (obstacle != null) {
+                        plan.put(obstacle);
                     }
                 }
             }
         }
+
+        for (int i = 0; i < foodCounter; i++) {
+            int randomX = generateRandomNumberBetween(random, startPoint.getX(), endPoint.getX());
+            int randomY = generateRandomNumberBetween(random, startPoint.getY(), endPoint.getY());
+            if (plan.get(randomX, randomY) != null) {
+                i--;
+                continue;
+            }
+            plan.put(new FoodSource(new Vector(randomX, randomY)));
+        }
+        return plan;
+    }
+
+    /**
+     * Places a FoodSource on a free cell of a rectangle, positions are drawn until a free one is found.
+     *
+     * @param random     Random stream, must be != null
+     * @param tiles      TileStorage of the Grid, must be != null
+     * @param startPoint Start Point of a rectangle, must be != null
+     * @param endPoint   End Point of a rectangle, must be != null and the rectangle must have a free cell
+     */
+    static void placeFoodSource(RandomGenerator random, TileStorage tiles, Vector startPoint, Vector endPoint) {
+        while (true) {
+            int randomX = generateRandomNumberBetween(random, startPoint.getX(), endPoint.getX());
+            int randomY = generateRandomNumberBetween(random, startPoint.getY(), endPoint.getY());
+            if (tiles.get(randomX, randomY) == null) {
+                tiles.put(new FoodSource(new Vector(randomX, randomY)));
+                return;
+            }
+        }
     }
 
     /**
@@ -113,10 +281,10 @@ public class Generator {
      */
     private void generateFoodSources(Vector startPoint, Vector endPoint) {
         for (int i = 0; i < foodCounter; i++) {
-            int randomX = generateRandomNumberBetween(startPoint.getX(), endPoint.getX());
-            int randomY = generateRandomNumberBetween(startPoint.getY(), endPoint.getY());
+            int randomX = generateRandomNumberBetween(random, startPoint.getX(), endPoint.getX());
+            int randomY = generateRandomNumberBetween(random, startPoint.getY(), endPoint.getY());
 
-            Tile tile = grid.getMap().get(new Vector(randomX, randomY));
+            Tile tile = grid.getTiles().get(randomX, randomY);
             if (tile != null) {
                 i--;
                 continue;
@@ -128,7 +296,7 @@ public class Generator {
             for (int x = 0; x < foodSourceWidth; x++) {
                 for (int y = 0; y < foodSourceHeight; y++) {
                     Vector position = new Vector(randomX + x, randomY + y);
-                    grid.getMap().put(position, new FoodSource(position));
+                    grid.getTiles().put(new FoodSource(position));
                 }
             }
         }
@@ -145,29 +313,29 @@ public class Generator {
         // prozedual: weil es z.B. mit Seiteneffekten am grid arbeitet
         // oo: verwendet Objekte von Colors, Vector, Ants, ..
         for (int i = 0; i < nestCounter; i++) {
-            int randomX = generateRandomNumberBetween(startPoint.getX(), endPoint.getX());
-            int randomY = generateRandomNumberBetween(startPoint.getY(), endPoint.getY());
+            int randomX = generateRandomNumberBetween(random, startPoint.getX(), endPoint.getX());
+            int randomY = generateRandomNumberBetween(random, startPoint.getY(), endPoint.getY());
 
-            Tile tile = grid.getMap().get(new Vector(randomX, randomY));
+            Tile tile = grid.getTiles().get(randomX, randomY);
             if (tile != null) {
                 i--;
                 continue;
             }
 
-            Color nestColor = new Color(generateRandomNumberBetween(0, 255), generateRandomNumberBetween(0, 255), generateRandomNumberBetween(0, 255));
+            Color nestColor = new Color(generateRandomNumberBetween(random, 0, 255), generateRandomNumberBetween(random, 0, 255), generateRandomNumberBetween(random, 0, 255));
             Nest nest = new Nest(new Vector(randomX, randomY), nestColor, antsPerNest, grid);
 
-            grid.getMap().put(new Vector(randomX, randomY), nest);
+            grid.addNest(nest);
 
             // spawn ants for nest
             int maxSpawnDistance = 10;
             // spawn ants
             for (int antCounter = 0; antCounter < antsPerNest; antCounter++) {
-                int randomXDelta = (int) (Math.random() * maxSpawnDistance * 2) - maxSpawnDistance;
-                int randomYDelta = (int) (Math.random() * maxSpawnDistance * 2) - maxSpawnDistance;
+                int randomXDelta = (int) (random.nextDouble() * maxSpawnDistance * 2) - maxSpawnDistance;
+                int randomYDelta = (int) (random.nextDouble() * maxSpawnDistance * 2) - maxSpawnDistance;
 
                 Vector spawnPos = new Vector(nest.getPosition().getX() + randomXDelta, nest.getPosition().getY() + randomYDelta);
-                nest.getAnts().add(new Ant(grid, nest, 100, spawnPos));
+                nest.spawnAnt(new Ant(grid, nest, 100, spawnPos, grid.getRandom().nextAntStream()));
             }
         }
     }
@@ -188,13 +356,14 @@ public class Generator {
      * Returns a random number in a given range.
      * Min value must be equal or lower than max value.
      *
-     * @param min Lower bound
-     * @param max Lower bound
+     * @param random Random stream to draw from, must be != null
+     * @param min    Lower bound
+     * @param max    Lower bound
      */
     // STYLE: funktionale Programmierung
     // basiert nur auf den Eingangsparametern basiert und verändert keinen Zustand und hat keine Seiteneffekte.
     // kann aber in fast allen Paradigmen verwendet werden.
-    private static int generateRandomNumberBetween(int min, int max) {
-        return (int) ((Math.random() * (max - min)) + min);
+    private static int generateRandomNumberBetween(RandomGenerator random, int min, int max) {
+        return (int) ((random.nextDouble() * (max - min)) + min);
     }
 }
@@ -1,7 +1,8 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 // Modularisierungseinheit: Klasse
 
 // handles the entire logic that depends on grid operations
@@ -9,12 +10,46 @@ public class Grid {
 
     // GOOD: objektorientierter Teil: hoher Zusammenhang zwischen Grid und Tiles.
     // Enge Verbindung der beiden Klassen um die Verwaltung von Tiles für den Zustands des Grids zu speichern
-    private final Map<Vector, Tile> map;
-    private Vector startPoint;
-    private Vector endPoint;
+    private final TileStorage tiles;
+    private final PheromoneField scent;
+    private final AntIndex antIndex;
+    private final AntTable antTable = new AntTable(this);
+    private final List<Nest> nests = new ArrayList<>();
+    // volatile, because GridMetrics reads them from other threads
+    private volatile Vector startPoint;
+    private volatile Vector endPoint;
+
+    // source of all random decisions
+    private final SimulationRandom random;
+
+    // every parallel phase of an update runs in this pool, it is shut down by close
+    private final ForkJoinPool pool;
+
+    // amount of scent decays so far, increases in every update
+    private long step;
+
+    // moves idle chunks out of memory every PAGING_INTERVAL updates, null if paging is disabled
+    private static final int PAGING_INTERVAL = 64;
+    private ChunkPager pager;
+
+    // plans the strips ants are approaching every PREDICTION_INTERVAL updates
+    private static final int PREDICTION_INTERVAL = 16;
+    private final ChunkPrefetcher prefetcher = new ChunkPrefetcher(this::planStrip);
+
+    // distances to every nest around the obstacles, recomputed in the background when the world changes
+    private final FlowFields flowFields;
+
+    // splits the ants by region for the parallel phases, null if sharding is disabled
+    private AntShards shards;
+
+    // share of the scent which spreads to the neighbour cells in every update, 0 disables diffusion
+    private float diffusion;
+
+    // durations of the update phases and other statistics
+    private final GridMetrics metrics = new GridMetrics(this);
 
     /**
-     * Initializes the Grid with a given size.
+     * Initializes the Grid with a given size and a random seed.
      * Generates basic entities in the Grid.
      * The size of the grid might increase if Ants reach the borders.
      *
@@ -22,65 +57,436 @@ public class Grid {
      * @param height Height of initial grid, must be > 0
      */
     public Grid(int width, int height) {
-        startPoint = new Vector(-1 * width / 2, -1 * height / 2);
-        endPoint = new Vector(width / 2, height / 2);
-        this.map = new ConcurrentHashMap<>();
+        this(width, height, System.nanoTime(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes the Grid with a given size.
+     * Generates basic entities in the Grid.
+     * The size of the grid might increase if Ants reach the borders.
+     * Two Grids with the same seed evolve identically, independent of the parallelism.
+     *
+     * @param width       Width of initial grid, must be > 0
+     * @param height      Height of initial grid, must be > 0
+     * @param seed        Seed for all random decisions
+     * @param parallelism Amount of threads used for the update, must be > 0
+     */
+    public Grid(int width, int height, long seed, int parallelism) {
+        this(GridOptions.of(width, height, seed, parallelism));
+    }
 
-        int nestCounter = (int) (Math.random() * 2) + 4;
-        int foodCounter = (int) (Math.random() * 30) + 20;
-        int antsPerNest = 500;
-        int obstacleCounter = (int) (Math.random() * 15) + 5;
+    /**
+     * Initializes the Grid with the given options.
+     * Generates basic entities in the Grid.
+     * The size of the grid might increase if Ants reach the borders.
+     * Two Grids with the same options evolve identically, independent of the parallelism.
+     *
+     * @param options Options of the Grid, must be != null
+     */
+    public Grid(GridOptions options) {
+        startPoint = new Vector(-1 * options.width() / 2, -1 * options.height() / 2);
+        endPoint = new Vector(options.width() / 2, options.height() / 2);
+        this.scent = new PheromoneField();
+        this.tiles = new TileStorage(scent);
+        this.antIndex = new AntIndex(tiles);
+        this.flowFields = new FlowFields(scent);
+        this.random = new SimulationRandom(options.seed());
+        this.pool = new ForkJoinPool(options.parallelism());
+        tiles.reserve(startPoint, endPoint);
 
         // STYLE: objektorientierte Programmierung
         // hohe Objektkopplung. Generator braucht unbedingt eine Grid-Instanz.
-        Generator generator = new Generator(this, nestCounter, foodCounter, antsPerNest, obstacleCounter);
+        Generator generator = new Generator(this, random.regionStream(startPoint, endPoint), options.nestCounter(), options.foodCounter(), options.antsPerNest(), options.obstacleCounter());
         generator.generateTilesForChunk(startPoint, endPoint);
         System.out.println("created everything!");
     }
 
     /**
-     * Returns the entities in a map.
+     * Initializes an empty Grid without generating anything, e.g. to restore a Snapshot into it.
      *
-     * @return Entity Map. Map != null
+     * @param seed        Seed for all random decisions
+     * @param parallelism Amount of threads used for the update, must be > 0
+     * @param startPoint  Lower left corner of the world, must be != null
+     * @param endPoint    Upper right corner of the world, must be != null
+     * @param step        Amount of updates which already happened, must be >= 0
      */
-    public Map<Vector, Tile> getMap() {
-        return map;
+    public Grid(long seed, int parallelism, Vector startPoint, Vector endPoint, long step) {
+        this.startPoint = startPoint;
+        this.endPoint = endPoint;
+        this.step = step;
+        this.scent = new PheromoneField();
+        this.tiles = new TileStorage(scent);
+        this.antIndex = new AntIndex(tiles);
+        this.flowFields = new FlowFields(scent);
+        this.random = new SimulationRandom(seed);
+        this.pool = new ForkJoinPool(parallelism);
+        tiles.reserve(startPoint, endPoint);
+    }
+
+    /**
+     * Returns the storage which holds all Tiles of the Grid.
+     *
+     * @return TileStorage, is != null
+     */
+    public TileStorage getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Returns the field which holds the scent of all nests.
+     *
+     * @return PheromoneField, is != null
+     */
+    public PheromoneField getScent() {
+        return scent;
+    }
+
+    /**
+     * Returns the index which knows where the Ants are.
+     *
+     * @return AntIndex, is != null
+     */
+    public AntIndex getAntIndex() {
+        return antIndex;
+    }
+
+    /**
+     * Returns the table which holds the state of all Ants.
+     *
+     * @return AntTable, is != null
+     */
+    public AntTable getAntTable() {
+        return antTable;
+    }
+
+    /**
+     * Returns the distances to the nests, which guide returning Ants around obstacles.
+     *
+     * @return FlowFields, is != null
+     */
+    public FlowFields getFlowFields() {
+        return flowFields;
+    }
+
+    /**
+     * Returns the source of all random decisions.
+     * Must only be used outside the parallel phases of update.
+     *
+     * @return SimulationRandom, is != null
+     */
+    public SimulationRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * @return lower left corner of the generated world, is != null
+     */
+    public Vector getStartPoint() {
+        return startPoint;
+    }
+
+    /**
+     * @return upper right corner of the generated world, is != null
+     */
+    public Vector getEndPoint() {
+        return endPoint;
+    }
+
+    /**
+     * Returns the statistics of the updates of this Grid.
+     *
+     * @return GridMetrics, is != null
+     */
+    public GridMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the pool for parallel work on this Grid.
+     * Must only be used outside the parallel phases of update.
+     *
+     * @return ForkJoinPool, is != null
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the amount of updates so far.
+     * It is increased right after the scent of all chunks decayed, so it is also the amount of decays of every chunk.
+     *
+     * @return amount of updates, is >= 0
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Checks if a chunk can be kept out of memory for a while.
+     * This is the case if it only contains tiles which do not change on their own (food sources and obstacles)
+     * and no ant is near it. Its scent still decays, but that can be repeated exactly when it is loaded again.
+     * While diffusion is enabled no chunk is idle.
+     *
+     * @param chunk    Loaded chunk, must be != null
+     * @param distance Minimum distance in chunks to every chunk with ants, must be >= 0
+     * @return true if the chunk is idle
+     */
+    public boolean isIdle(Chunk chunk, int distance) {
+        // an idle chunk only replays its decay, which would miss the scent diffusing in and out
+        if (diffusion > 0) {
+            return false;
+        }
+        for (int dy = -distance; dy <= distance; dy++) {
+            for (int dx = -distance; dx <= distance; dx++) {
+                if (antIndex.countInChunk((chunk.getChunkX() + dx) << Chunk.SHIFT, (chunk.getChunkY() + dy) << Chunk.SHIFT) > 0) {
+                    return false;
+                }
+            }
+        }
+        return !chunk.hasDynamicTiles();
+    }
+
+    /**
+     * Puts a new Nest on the Grid.
+     *
+     * @param nest Nest, must be != null
+     */
+    public void addNest(Nest nest) {
+        tiles.put(nest);
+        synchronized (nests) {
+            nests.add(nest);
+        }
+        flowFields.invalidate();
     }
 
     /**
      * Handles the update process of the Grid.
-     * Tiles which are not needed anymore are removed from the map.
+     * Tiles which are not needed anymore are removed from the storage.
+     * <p>
+     * An update runs in phases, every parallel phase only reads what the phases before have written:
+     * 0. due FlowFields are installed and new ones are requested if they are outdated, see FlowFields,
+     *    and the pending chunks around the Ants are loaded,
+     * 1. every Ant decides on the state of the last update and records its changes to the world in its slot,
+     *    it only reads loaded chunks and creates no Tiles,
+     * 2. the Tiles the Ants leave scent on are created sequentially, then the Ants leave their scent,
+     *    one Nest per thread because a Nest owns its scent layer,
+     * 3. the recorded food, birth and death changes are applied sequentially in Nest and Ant order,
+     * 4. every active chunk decays its scent from the read into the write buffer and its tiles are updated.
+     * A chunk is active if it has Tiles which are not static. The others only hold obstacles and food sources,
+     * their scent does not decay, so skipping them changes nothing and the cost follows the scent area.
+     * If diffusion is enabled, all active chunks first diffuse into their write buffers, because the stencil reads
+     * the neighbour chunks, and then every active chunk only swaps its buffers in step 4.
+     * Then a chunk is also active if a neighbour has scent which can flow into it.
+     * Because no phase depends on the order of threads, the result is the same for every parallelism.
+     * If sharding is enabled, steps 1 and 2 split the Ants by region instead, see AntShards.
+     * This gives every thread its own part of the world, the result stays the same.
+     * The duration of every phase is recorded in the GridMetrics.
      */
     //STYLE: wir haben die update Funktion vom Grid refactored als parallelem Teil.
     // Ziel dahinter ist, die Berechnung der ganzen Simulation zu beschleunigen.
     public void update() {
-        // update all entities
-
-        // BAD: Wir müssen die Nests extra behandeln. Das hat den Grund, dass die Nests die Updates ihrer Ants triggert.
-        // Da alle Entities in der Map durcheinander gespeichert sind, könnte es sein dass ein Tile vor den Ants das Update macht und es deswegen zu Inkonsistenzen kommt.
-        // Dadurch dass wir zuerst die Nests updaten, werden am Anfang die Ants geupdated und dann erst der Rest.
-        // Man sollte versuchen, alle Tiles mit einem Schleiendurchlauf und ohne extra Bedingung für Nests zu updaten.
-        List<Vector> removingItems = new CopyOnWriteArrayList<>();
-        getNests().parallelStream().forEach(nest -> {
-            if (nest.update()) {
-                removingItems.add(nest.getPosition());
+        long start = System.nanoTime();
+        List<Nest> currentNests = getNests();
+        flowFields.update(tiles, antTable, currentNests, step);
+        antIndex.loadAroundAnts();
+
+        if (shards != null) {
+            shards.assign(antTable, pool.getParallelism(), false);
+            antTable.update(pool, shards);
+        } else {
+            antTable.update(pool);
+        }
+        long antsDone = System.nanoTime();
+        metrics.record(GridMetrics.Phase.ANTS, antsDone - start);
+
+        antTable.createScentTiles();
+        if (shards != null) {
+            shards.assign(antTable, pool.getParallelism(), true);
+            antTable.depositScent(pool, shards);
+        } else {
+            pool.submit(() -> currentNests.parallelStream().forEach(Nest::depositScent)).join();
+        }
+        int antsBefore = antIndex.size();
+        long createdBefore = totalAntsCreated(currentNests);
+        currentNests.forEach(Nest::commit);
+        long born = totalAntsCreated(currentNests) - createdBefore;
+        long nestsDone = System.nanoTime();
+        metrics.record(GridMetrics.Phase.NESTS, nestsDone - antsDone);
+
+        List<Chunk> chunks = tiles.getChunks().stream().filter(this::isActive).toList();
+        if (diffusion > 0) {
+            pool.submit(() -> chunks.parallelStream().forEach(this::diffuseChunk)).join();
+        }
+        // GOOD: Durch die Verwendung von dynamischen Binden werden von allen Entities die update Methoden aufgerufen
+        List<Tile> removingItems = pool.submit(() -> chunks.parallelStream()
+                .map(this::updateChunk)
+                .flatMap(List::stream)
+                .toList()).join();
+        step++;
+        long tilesDone = System.nanoTime();
+        metrics.record(GridMetrics.Phase.TILES, tilesDone - nestsDone);
+
+        removingItems.forEach(tile -> {
+            removeTile(tile);
+            if (tile instanceof Nest nest) {
+                synchronized (nests) {
+                    nests.remove(nest);
+                }
+                flowFields.invalidate();
                 System.out.println("total farmed food of nest" + nest + "  was " + nest.getTotalFarmedFood() + " with a total amout of ants of " + nest.getTotalAntsCreated());
             }
         });
+        long removalDone = System.nanoTime();
+        metrics.record(GridMetrics.Phase.REMOVAL, removalDone - tilesDone);
 
-        // GOOD: Durch die Verwendung von dynamischen Binden werden von allen Entities die update Methoden aufgerufen
-        map.entrySet().parallelStream().forEach(entry -> {
-            if (entry.getValue() instanceof Nest) {
-                return;
-            }
+        generateNewChunks();
+        if (step % PREDICTION_INTERVAL == 0) {
+            prefetcher.predict(antTable, startPoint, endPoint);
+        }
+        if (pager != null && step % PAGING_INTERVAL == 0) {
+            pager.evictIdle();
+        }
+        long end = System.nanoTime();
+        metrics.record(GridMetrics.Phase.GENERATION, end - removalDone);
+        metrics.record(GridMetrics.Phase.STEP, end - start);
+        metrics.endStep(born, antsBefore + born - antIndex.size());
+    }
 
-            if (entry.getValue().update()) {
-                removingItems.add(entry.getKey());
+    /**
+     * @return sum of the Ants every Nest has created so far
+     */
+    private static long totalAntsCreated(List<Nest> nests) {
+        long total = 0;
+        for (Nest nest : nests) {
+            total += nest.getTotalAntsCreated();
+        }
+        return total;
+    }
+
+    /**
+     * Enables paging: from now on idle chunks are moved into a spill file and read back when they are needed.
+     * This keeps the memory bounded for long runs. The result of the simulation does not change.
+     * Has no effect if paging is already enabled. The spill file is deleted by close.
+     *
+     * @param directory Directory for the spill file, must be != null
+     * @throws IOException if the spill file cannot be created
+     */
+    public void enablePaging(Path directory) throws IOException {
+        if (pager == null) {
+            pager = new ChunkPager(this, directory);
+        }
+    }
+
+    /**
+     * Releases the resources of the Grid: the threads of its pool end and the spill file of the paging is deleted.
+     * The Grid must not be used afterwards, chunks in the spill file can not be loaded anymore.
+     *
+     * @throws IOException if the spill file cannot be closed
+     */
+    public void close() throws IOException {
+        pool.shutdown();
+        if (pager != null) {
+            pager.close();
+        }
+    }
+
+    /**
+     * Enables or disables sharding: the Ants are split into bands of chunk rows with about the same amount
+     * of Ants, one per thread, so every thread works on its own region of the world (see AntShards).
+     * Scent is then left per region instead of per Nest, so even a world with few Nests uses all threads.
+     * The result of the simulation does not change. Must be called between two updates.
+     *
+     * @param sharded true to enable sharding
+     */
+    public void setSharded(boolean sharded) {
+        this.shards = sharded ? new AntShards() : null;
+    }
+
+    /**
+     * Enables the diffusion of scent. In every update each cell exchanges the given share of the difference
+     * to its four neighbours, obstacles, food sources and nests do not take part.
+     * Empty cells which receive enough scent get a Tile, like cells an Ant walked over.
+     * Must be called between two updates.
+     *
+     * @param diffusion Share in [0; 1], 0 disables the diffusion
+     */
+    public void setDiffusion(float diffusion) {
+        this.diffusion = diffusion;
+    }
+
+    /**
+     * @return share of the scent which spreads to the neighbour cells in every update, 0 if diffusion is disabled
+     */
+    public float getDiffusion() {
+        return diffusion;
+    }
+
+    /**
+     * Diffuses the scent of a chunk into its write buffers, see PheromoneField.diffuse.
+     *
+     * @param chunk Chunk, must be != null
+     */
+    private void diffuseChunk(Chunk chunk) {
+        int x = chunk.getChunkX() << Chunk.SHIFT;
+        int y = chunk.getChunkY() << Chunk.SHIFT;
+        scent.diffuse(chunk, tiles.getLoadedChunk(x - Chunk.SIZE, y), tiles.getLoadedChunk(x + Chunk.SIZE, y),
+                tiles.getLoadedChunk(x, y - Chunk.SIZE), tiles.getLoadedChunk(x, y + Chunk.SIZE), diffusion);
+    }
+
+    /**
+     * Checks if a chunk has to be updated, see update.
+     *
+     * @param chunk Chunk, must be != null
+     * @return true if the chunk is active
+     */
+    private boolean isActive(Chunk chunk) {
+        if (chunk.hasDynamicTiles()) {
+            return true;
+        }
+        if (diffusion == 0) {
+            return false;
+        }
+        int x = chunk.getChunkX() << Chunk.SHIFT;
+        int y = chunk.getChunkY() << Chunk.SHIFT;
+        return hasScentTiles(tiles.getLoadedChunk(x - Chunk.SIZE, y)) || hasScentTiles(tiles.getLoadedChunk(x + Chunk.SIZE, y))
+                || hasScentTiles(tiles.getLoadedChunk(x, y - Chunk.SIZE)) || hasScentTiles(tiles.getLoadedChunk(x, y + Chunk.SIZE));
+    }
+
+    private static boolean hasScentTiles(Chunk chunk) {
+        return chunk != null && chunk.getScentTileCount() > 0;
+    }
+
+    /**
+     * Decays the scent of an active chunk and updates all of its Tiles which are not static.
+     * Only plain Tiles lose scent, so the decay is skipped if there are none.
+     * If diffusion is enabled, the scent was already computed by diffuseChunk and the buffers are only swapped.
+     *
+     * @param chunk Chunk, must be != null
+     * @return Tiles of the chunk which are not needed anymore, is != null
+     */
+    private List<Tile> updateChunk(Chunk chunk) {
+        chunk.markChanged();
+        if (diffusion > 0) {
+            scent.swap(chunk);
+            for (int cell = 0; cell < Chunk.CELLS; cell++) {
+                if (chunk.get(cell) == null && chunk.getStrongestLayer(cell) >= 0) {
+                    // scent diffused into an empty cell
+                    chunk.getOrCreate(cell);
+                }
             }
-        });
+        } else if (chunk.getScentTileCount() > 0) {
+            scent.decay(chunk);
+        }
 
-        removingItems.forEach(map::remove);
-        generateNewChunks();
+        List<Tile> removingItems = new ArrayList<>();
+        for (int cell = chunk.nextDynamicCell(0); cell >= 0; cell = chunk.nextDynamicCell(cell + 1)) {
+            Tile tile = chunk.get(cell);
+            if (tile.update()) {
+                removingItems.add(tile);
+            }
+        }
+        metrics.addScentTiles(chunk.getScentTileCount());
+        return removingItems;
     }
 
     /**
@@ -89,15 +495,9 @@ public class Grid {
      * @return List of Nests, which is != null
      */
     public ArrayList<Nest> getNests() {
-        ArrayList<Nest> nests = new ArrayList<>();
-
-        map.forEach((key, value) -> {
-            if (value instanceof Nest nest) {
-                nests.add(nest);
-            }
-        });
-
-        return nests;
+        synchronized (nests) {
+            return new ArrayList<>(nests);
+        }
     }
 
     /**
@@ -112,146 +512,99 @@ public class Grid {
     }
 
     /**
-     * Returns all entities which need an update in a List.
-     * Map is build in this way:
-     * normal tiles,
-     * ants,
-     * foodSources, obstacles & nests
+     * Returns the amount of Ants on the Grid without copying them.
      *
-     * @return Entity List != null
+     * @return amount of Ants, is >= 0
      */
-    public ArrayList<Entity> queue() {
-        ArrayList<Entity> entities = new ArrayList<>();
-        ArrayList<Entity> tilesWithScent = new ArrayList<>();
-        ArrayList<Entity> otherTiles = new ArrayList<>(); // Nests, FoodSources, Obstacles
-
-        map.forEach((key, value) -> {
-            if (value.getCurrentStink(null) <= 1f) {
-                tilesWithScent.add(value);
-            } else {
-                otherTiles.add(value);
-            }
-        });
-
-        // add all entities in a specific order
-        entities.addAll(tilesWithScent);
-        entities.addAll(getAnts());
-        entities.addAll(otherTiles);
-
-        return entities;
+    public int getAntCount() {
+        return antIndex.size();
     }
 
     /**
      * Returns a tile at a given position.
-     * If the Tile at this position is not already in the map, it gets created.
+     * If the Tile at this position is not already in the storage, it gets created or a removed one is reused.
      *
      * @param position Position, must be != null
      * @return Tile != null
      */
     public Tile getTile(Vector position) {
-        Tile tile = map.get(position);
+        return getTile(position.getX(), position.getY());
+    }
+
+    /**
+     * Returns a tile at a given position.
+     * If the Tile at this position is not already in the storage, it gets created or a removed one is reused.
+     *
+     * @param x X coordinate of the position
+     * @param y Y coordinate of the position
+     * @return Tile != null
+     */
+    public Tile getTile(int x, int y) {
+        Tile tile = tiles.get(x, y);
         if (tile == null) {
-            Tile newTile = new Tile(position);
-            putTile(newTile);
-            return newTile;
+            return tiles.getOrCreate(x, y);
         }
         return tile;
     }
 
     /**
-     * Removes a Tile from the Map.
+     * Removes a Tile from the storage.
      * If the Tile does not exist, it has no effects.
      *
      * @param tile Tile, must be != null
      */
     public void removeTile(Tile tile) {
-        map.remove(tile.getPosition());
-    }
-
-    /**
-     * Puts a Tile into the Map.
-     * The key is retrieved from the Tile.
-     *
-     * @param tile tile, must be != null
-     */
-    private void putTile(Tile tile) {
-        map.put(tile.getPosition(), tile);
+        tiles.remove(tile.getPosition().getX(), tile.getPosition().getY());
     }
 
     /**
      * Checks if there is any ant which want to go to unknown territory.
      * If so, the map increases and new Obstacles, Nests and FoodSources are getting generated.
+     * Strips which the ChunkPrefetcher planned in advance are only applied.
      */
 
     private void generateNewChunks() {
-        int chunkSize = 20;
-
         Boolean[] extendSides = new Boolean[4];
-        ArrayList<Ant> ants = getAnts();
 
-        extendSides[0] = ants.stream().anyMatch(ant -> ant.getPosition().getX() == startPoint.getX());
-        extendSides[1] = ants.stream().anyMatch(ant -> ant.getPosition().getX() == endPoint.getX());
-        extendSides[2] = ants.stream().anyMatch(ant -> ant.getPosition().getY() == startPoint.getY());
-        extendSides[3] = ants.stream().anyMatch(ant -> ant.getPosition().getY() == endPoint.getY());
+        extendSides[ChunkPrefetcher.LEFT] = antIndex.hasAntInColumn(startPoint.getX());
+        extendSides[ChunkPrefetcher.RIGHT] = antIndex.hasAntInColumn(endPoint.getX());
+        extendSides[ChunkPrefetcher.BOTTOM] = antIndex.hasAntInRow(startPoint.getY());
+        extendSides[ChunkPrefetcher.TOP] = antIndex.hasAntInRow(endPoint.getY());
 
         // no need to update chunks
         if (!List.of(extendSides).contains(true)) {
             return;
         }
 
-        Generator generator = new Generator(this, 0, 7, 0, 2);
-        Vector newStartPoint, newChunkStartPoint, newEndPoint, newChunkEndPoint;
-        if (extendSides[0]) {
-            // extend left
-            newStartPoint = new Vector(startPoint.getX() - chunkSize, startPoint.getY());
-            // newEndPoint = endPoint;
-
-            newChunkStartPoint = newStartPoint;
-            newChunkEndPoint = new Vector(startPoint.getX(), endPoint.getY());
-
-            startPoint = newStartPoint;
-
-            generator.generateTilesForChunk(newChunkStartPoint, newChunkEndPoint);
-        }
-
-        if (extendSides[1]) {
-            // extend right
-            // newStartPoint = startPoint;
-            newEndPoint = new Vector(endPoint.getX() + chunkSize, endPoint.getY());
-
-            newChunkStartPoint = new Vector(endPoint.getX(), startPoint.getY());
-            newChunkEndPoint = endPoint;
-
-            endPoint = newEndPoint;
-
-            generator.generateTilesForChunk(newChunkStartPoint, newChunkEndPoint);
-        }
-
-        if (extendSides[2]) {
-            // extend bottom
-            newStartPoint = new Vector(startPoint.getX(), startPoint.getY() - chunkSize);
-            // newEndPoint = endPoint;
-
-            newChunkStartPoint = newStartPoint;
-            newChunkEndPoint = new Vector(endPoint.getX(), startPoint.getY());
-
-            startPoint = newStartPoint;
-
-            generator.generateTilesForChunk(newChunkStartPoint, newChunkEndPoint);
+        // every strip spans the world including the strips before it, so the order of the sides is fixed
+        for (int side = 0; side < extendSides.length; side++) {
+            if (!extendSides[side]) {
+                continue;
+            }
+            Vector[] strip = ChunkPrefetcher.strip(side, startPoint, endPoint);
+            if (side == ChunkPrefetcher.LEFT || side == ChunkPrefetcher.BOTTOM) {
+                startPoint = strip[0];
+            } else {
+                endPoint = strip[1];
+            }
+            prefetcher.take(side, strip).apply(tiles);
         }
 
-        if (extendSides[3]) {
-            // extend top
-            // newStartPoint = startPoint;
-            newEndPoint = new Vector(endPoint.getX(), endPoint.getY() + chunkSize);
-
-            newChunkStartPoint = new Vector(startPoint.getX(), endPoint.getY());
-            newChunkEndPoint = newEndPoint;
-
-            endPoint = newEndPoint;
+        tiles.reserve(startPoint, endPoint);
+        flowFields.invalidate();
+    }
 
-            generator.generateTilesForChunk(newChunkStartPoint, newChunkEndPoint);
-        }
+    /**
+     * Plans obstacles and FoodSources of a new strip at the border of the Grid.
+     * Every strip draws from its own stream, so its content only depends on its position.
+     * Is called by the ChunkPrefetcher, possibly from any thread.
+     *
+     * @param startPoint Start Point of the strip, must be != null
+     * @param endPoint   End Point of the strip, must be != null
+     * @return StripPlan, is != null
+     */
+    private StripPlan planStrip(Vector startPoint, Vector endPoint) {
+        return Generator.planStrip(random.regionStream(startPoint, endPoint), startPoint, endPoint, 7, 2);
     }
 
     /**
@@ -260,7 +613,7 @@ public class Grid {
     //STYLE: neue Funktion für funktionalem Teil von Simulation
     public void generateFoodSources() {
         // GOOD: objektorientierter Teil: hoher Zusammenhang zwischen Grid und Generator, da der Generator eine Instanz eines Grids benötigt.
-        Generator generator = new Generator(this, 0, 15, 0, 0);
+        Generator generator = new Generator(this, random.nextCommandStream(), 0, 15, 0, 0);
         generator.generateTilesForChunk(startPoint, endPoint);
     }
 
@@ -269,7 +622,7 @@ public class Grid {
      */
     //STYLE: neue Funktion für funktionalem Teil von Simulation
     public void generateNests() {
-        Generator generator = new Generator(this, 1, 0, 200, 0);
+        Generator generator = new Generator(this, random.nextCommandStream(), 1, 0, 200, 0);
         generator.generateTilesForChunk(startPoint, endPoint);
     }
 }
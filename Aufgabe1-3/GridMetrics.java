@@ -0,0 +1,197 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+// Modularisierungseinheit: Klasse
+
+// Collects what happens in the updates of a Grid: how long every phase takes, how many ants are born and die
+// and how large the world is. Recording only costs a few atomic additions per update, so it is always on.
+// Sizes like the amount of chunks are not recorded at all, they are read from the Grid when someone asks.
+// The values can be read from any thread, e.g. over JMX after register was called.
+public class GridMetrics implements GridMetricsMXBean {
+
+    // phases of Grid.update, STEP is the whole update
+    public enum Phase {
+        ANTS, NESTS, TILES, REMOVAL, GENERATION, STEP
+    }
+
+    private final Grid grid;
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+
+    private final AtomicLong steps = new AtomicLong();
+    private final AtomicLong births = new AtomicLong();
+    private final AtomicLong deaths = new AtomicLong();
+
+    // scent tiles of the current update, added by the chunks in parallel
+    private final LongAdder countingScentTiles = new LongAdder();
+    private volatile long scentTiles;
+
+    // name under which the metrics are visible over JMX, null if they are not registered
+    private ObjectName registeredName;
+
+    /**
+     * Initializes the metrics of a Grid.
+     *
+     * @param grid Grid, must be != null
+     */
+    public GridMetrics(Grid grid) {
+        this.grid = grid;
+        for (Phase phase : Phase.values()) {
+            latencies.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Makes the metrics visible over JMX as "ants:type=Grid,name=" + name.
+     *
+     * The MBean server keeps the Grid reachable, so unregister has to be called when the Grid is not needed anymore.
+     *
+     * @param name Name of the Grid, must be != null and must not be registered yet
+     * @throws JMException if the name is invalid or already used
+     */
+    public synchronized void register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("ants:type=Grid,name=" + name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+    }
+
+    /**
+     * Removes the metrics from JMX, so the name can be used again. Has no effect if they are not registered.
+     *
+     * @throws JMException if the MBean server cannot remove them, they stay registered then
+     */
+    public synchronized void unregister() throws JMException {
+        if (registeredName == null) {
+            return;
+        }
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        registeredName = null;
+    }
+
+    /**
+     * Records the duration of a phase. Must only be called by the thread which updates the Grid.
+     *
+     * @param phase Phase, must be != null
+     * @param nanos Duration in nanoseconds, must be >= 0
+     */
+    public void record(Phase phase, long nanos) {
+        latencies.get(phase).record(nanos);
+    }
+
+    /**
+     * Counts Tiles which only carry scent. May be called from any thread during an update.
+     *
+     * @param amount Amount of Tiles, must be >= 0
+     */
+    public void addScentTiles(int amount) {
+        countingScentTiles.add(amount);
+    }
+
+    /**
+     * Finishes the metrics of an update. Must only be called by the thread which updates the Grid.
+     *
+     * @param born Amount of Ants which were born in the update, must be >= 0
+     * @param died Amount of Ants which died in the update, must be >= 0
+     */
+    public void endStep(long born, long died) {
+        births.addAndGet(born);
+        deaths.addAndGet(died);
+        scentTiles = countingScentTiles.sumThenReset();
+        steps.incrementAndGet();
+    }
+
+    /**
+     * Returns the histogram of a phase.
+     *
+     * @param phase Phase, must be != null
+     * @return LatencyHistogram, is != null
+     */
+    public LatencyHistogram getLatency(Phase phase) {
+        return latencies.get(phase);
+    }
+
+    @Override
+    public long getSteps() {
+        return steps.get();
+    }
+
+    @Override
+    public long getBirths() {
+        return births.get();
+    }
+
+    @Override
+    public long getDeaths() {
+        return deaths.get();
+    }
+
+    @Override
+    public int getAntCount() {
+        return grid.getAntCount();
+    }
+
+    @Override
+    public Map<String, Integer> getAntsPerNest() {
+        Map<String, Integer> ants = new LinkedHashMap<>();
+        for (Nest nest : grid.getNests()) {
+            ants.put(String.valueOf(nest.getIndex()), nest.getAntCount());
+        }
+        return ants;
+    }
+
+    @Override
+    public long getScentTileCount() {
+        return scentTiles;
+    }
+
+    @Override
+    public int getChunkCount() {
+        return grid.getTiles().getChunks().size();
+    }
+
+    @Override
+    public int getPagedChunkCount() {
+        return grid.getTiles().getPendingCount();
+    }
+
+    @Override
+    public int getMapWidth() {
+        return grid.getEndPoint().getX() - grid.getStartPoint().getX() + 1;
+    }
+
+    @Override
+    public int getMapHeight() {
+        return grid.getEndPoint().getY() - grid.getStartPoint().getY() + 1;
+    }
+
+    @Override
+    public Map<String, Long> getMeanNanos() {
+        return perPhase(LatencyHistogram::getMean);
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos() {
+        return perPhase(histogram -> histogram.getPercentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getMaxNanos() {
+        return perPhase(LatencyHistogram::getMax);
+    }
+
+    @Override
+    public void resetLatencies() {
+        latencies.values().forEach(LatencyHistogram::reset);
+    }
+
+    private Map<String, Long> perPhase(ToLongFunction<LatencyHistogram> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        latencies.forEach((phase, histogram) -> values.put(phase.name(), value.applyAsLong(histogram)));
+        return values;
+    }
+}
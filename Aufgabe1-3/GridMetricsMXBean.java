@@ -0,0 +1,77 @@
+import java.util.Map;
+// Modularisierungseinheit: Modul
+
+// Management interface of GridMetrics, e.g. for JConsole or VisualVM.
+// Durations are in nanoseconds and keyed by the name of a GridMetrics.Phase.
+public interface GridMetricsMXBean {
+
+    /**
+     * @return amount of updates since the metrics were created
+     */
+    long getSteps();
+
+    /**
+     * @return amount of Ants which were born since the metrics were created
+     */
+    long getBirths();
+
+    /**
+     * @return amount of Ants which died since the metrics were created
+     */
+    long getDeaths();
+
+    /**
+     * @return current amount of Ants
+     */
+    int getAntCount();
+
+    /**
+     * @return current amount of Ants per Nest index
+     */
+    Map<String, Integer> getAntsPerNest();
+
+    /**
+     * @return amount of Tiles which only carry scent, counted in the last update
+     */
+    long getScentTileCount();
+
+    /**
+     * @return amount of chunks in memory
+     */
+    int getChunkCount();
+
+    /**
+     * @return amount of chunks which were paged out or are not restored yet
+     */
+    int getPagedChunkCount();
+
+    /**
+     * @return current width of the world
+     */
+    int getMapWidth();
+
+    /**
+     * @return current height of the world
+     */
+    int getMapHeight();
+
+    /**
+     * @return mean duration per phase
+     */
+    Map<String, Long> getMeanNanos();
+
+    /**
+     * @return upper bound of the 99th percentile per phase
+     */
+    Map<String, Long> getP99Nanos();
+
+    /**
+     * @return longest duration per phase
+     */
+    Map<String, Long> getMaxNanos();
+
+    /**
+     * Forgets all recorded durations, e.g. after the warmup.
+     */
+    void resetLatencies();
+}
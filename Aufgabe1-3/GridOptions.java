@@ -0,0 +1,49 @@
+// Modularisierungseinheit: Klasse
+// parameters of a Grid are given by a record
+
+/**
+ * @param width           width of the initial grid - must be > 0
+ * @param height          height of the initial grid - must be > 0
+ * @param seed            seed for all random decisions of the grid
+ * @param parallelism     amount of threads used for an update - must be > 0
+ * @param nestCounter     amount of nests in the initial grid - must be >= 0
+ * @param foodCounter     amount of food sources in the initial grid - must be >= 0
+ * @param antsPerNest     amount of ants which are spawned around each nest - must be >= 0
+ * @param obstacleCounter amount of obstacles in the initial grid - must be >= 0
+ */
+public record GridOptions(int width, int height, long seed, int parallelism,
+                          int nestCounter, int foodCounter, int antsPerNest, int obstacleCounter) {
+
+    /**
+     * Creates options with the default amounts of entities.
+     * The amounts are drawn from the seed, so the same seed always leads to the same options.
+     *
+     * @param width       width of the initial grid - must be > 0
+     * @param height      height of the initial grid - must be > 0
+     * @param seed        seed for all random decisions of the grid
+     * @param parallelism amount of threads used for an update - must be > 0
+     * @return GridOptions, is != null
+     */
+    public static GridOptions of(int width, int height, long seed, int parallelism) {
+        RandomStream random = new SimulationRandom(seed).optionsStream();
+        int nestCounter = random.nextInt(2) + 4;
+        int foodCounter = random.nextInt(30) + 20;
+        int antsPerNest = 500;
+        int obstacleCounter = random.nextInt(15) + 5;
+        return new GridOptions(width, height, seed, parallelism, nestCounter, foodCounter, antsPerNest, obstacleCounter);
+    }
+
+    @Override
+    public String toString() {
+        return "GridOptions{" +
+                "width=" + width +
+                ", height=" + height +
+                ", seed=" + seed +
+                ", parallelism=" + parallelism +
+                ", nestCounter=" + nestCounter +
+                ", foodCounter=" + foodCounter +
+                ", antsPerNest=" + antsPerNest +
+                ", obstacleCounter=" + obstacleCounter +
+                '}';
+    }
+}
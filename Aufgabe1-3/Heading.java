@@ -0,0 +1,128 @@
+import java.util.random.RandomGenerator;
+// Modularisierungseinheit: Klasse
+
+// Primitive model of the 8 directions an ant can look at.
+// A heading is an int in [0; 8), counter-clockwise starting at east.
+// All offsets are precomputed, so turning and looking around allocates nothing.
+public final class Heading {
+    public static final int COUNT = 8;
+
+    // offset of each heading
+    public static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    public static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    // the five directions an ant looks at, relative to its heading: left, left front, front, right front, right
+    public static final int[] LOOK = {2, 1, 0, -1, -2};
+    public static final int FRONT = 2;
+
+    // NEIGHBOUR_DX[heading][slot] is the x offset of look slot "slot" for an ant with the given heading
+    public static final int[][] NEIGHBOUR_DX = new int[COUNT][LOOK.length];
+    public static final int[][] NEIGHBOUR_DY = new int[COUNT][LOOK.length];
+
+    // one shared Vector per heading for callers which need a Vector
+    private static final Vector[] VECTORS = new Vector[COUNT];
+
+    static {
+        for (int heading = 0; heading < COUNT; heading++) {
+            VECTORS[heading] = new Vector(DX[heading], DY[heading]);
+            for (int slot = 0; slot < LOOK.length; slot++) {
+                int look = rotate(heading, LOOK[slot]);
+                NEIGHBOUR_DX[heading][slot] = DX[look];
+                NEIGHBOUR_DY[heading][slot] = DY[look];
+            }
+        }
+    }
+
+    private Heading() {
+    }
+
+    /**
+     * Rotates a heading counter-clockwise by steps of 45 degrees.
+     *
+     * @param heading Heading in [0; 8)
+     * @param steps   Amount of steps, negative values rotate clockwise
+     * @return rotated heading in [0; 8)
+     */
+    public static int rotate(int heading, int steps) {
+        return (heading + steps) & (COUNT - 1);
+    }
+
+    /**
+     * @param heading Heading in [0; 8)
+     * @return the opposite heading in [0; 8)
+     */
+    public static int invert(int heading) {
+        return rotate(heading, COUNT / 2);
+    }
+
+    /**
+     * @param random Random stream to draw from, must be != null
+     * @return uniformly distributed heading in [0; 8)
+     */
+    public static int random(RandomGenerator random) {
+        return random.nextInt(COUNT);
+    }
+
+    /**
+     * Converts a direction Vector into a heading.
+     *
+     * @param direction Vector with x and y coordinates in [-1;1], not both 0, must be != null
+     * @return heading in [0; 8)
+     */
+    public static int of(Vector direction) {
+        return of(direction.getX(), direction.getY());
+    }
+
+    /**
+     * Converts a direction into a heading.
+     *
+     * @param dx X offset in [-1;1]
+     * @param dy Y offset in [-1;1], not 0 if dx is 0
+     * @return heading in [0; 8)
+     */
+    public static int of(int dx, int dy) {
+        for (int heading = 0; heading < COUNT; heading++) {
+            if (DX[heading] == dx && DY[heading] == dy) {
+                return heading;
+            }
+        }
+        throw new IllegalArgumentException("no heading for (" + dx + ", " + dy + ")");
+    }
+
+    /**
+     * @param heading Heading in [0; 8)
+     * @return shared direction Vector of the heading, is != null
+     */
+    public static Vector toVector(int heading) {
+        return VECTORS[heading];
+    }
+
+    /**
+     * Rounds the direction from one position to another to one of the 8 directions,
+     * like normalizing the difference and rounding each coordinate, but without a square root.
+     * A coordinate becomes +-1 if it is at least half of the length, i.e. 4 * d^2 >= dx^2 + dy^2.
+     *
+     * @param dx X difference
+     * @param dy Y difference
+     * @return rounded x component in [-1;1]
+     */
+    public static int roundedX(int dx, int dy) {
+        return round(dx, dy);
+    }
+
+    /**
+     * See roundedX.
+     *
+     * @param dx X difference
+     * @param dy Y difference
+     * @return rounded y component in [-1;1]
+     */
+    public static int roundedY(int dx, int dy) {
+        return round(dy, dx);
+    }
+
+    private static int round(int d, int other) {
+        long squared = (long) d * d;
+        return 3 * squared >= (long) other * other && d != 0 ? Integer.signum(d) : 0;
+    }
+}
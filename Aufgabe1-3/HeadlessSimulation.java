@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+// Modularisierungseinheit: Klasse
+
+// runs a Grid without any window, e.g. for parameter sweeps on machines without a display
+public class HeadlessSimulation {
+    private final Grid grid;
+    private final int steps;
+
+    /**
+     * Initializes a headless Simulation.
+     *
+     * @param options Options of the Grid, must be != null
+     * @param steps   Amount of updates, must be > 0
+     */
+    public HeadlessSimulation(GridOptions options, int steps) {
+        this(new Grid(options), steps);
+    }
+
+    /**
+     * Initializes a headless Simulation which continues an existing Grid, e.g. from a Snapshot.
+     *
+     * @param grid  Grid, must be != null
+     * @param steps Amount of updates, must be > 0
+     */
+    public HeadlessSimulation(Grid grid, int steps) {
+        this.grid = grid;
+        this.steps = steps;
+    }
+
+    /**
+     * Runs all steps and prints one line per step with the throughput in ant-steps per second.
+     * At the end the statistics of every nest, the durations of the update phases and the total throughput are printed.
+     * Lines are semicolon separated, so the output can be read as CSV.
+     */
+    // GOOD: prozeduale Programmierung: Kontrollfluss leicht erkennbar
+    public void start() {
+        System.out.println("step;ants;nanos;antStepsPerSecond");
+
+        long totalAntSteps = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < steps; i++) {
+            long step = grid.getStep();
+            int ants = grid.getAntCount();
+            long start = System.nanoTime();
+            grid.update();
+            long nanos = System.nanoTime() - start;
+
+            totalAntSteps += ants;
+            totalNanos += nanos;
+            System.out.println(step + ";" + ants + ";" + nanos + ";" + antStepsPerSecond(ants, nanos));
+        }
+
+        System.out.println("nest;color;ants;totalAntsCreated;totalFarmedFood");
+        for (Nest nest : grid.getNests()) {
+            System.out.println(nest.getIndex() + ";" + nest.getColor().getRGB() + ";" + nest.getAntCount()
+                    + ";" + nest.getTotalAntsCreated() + ";" + nest.getTotalFarmedFood());
+        }
+        GridMetrics metrics = grid.getMetrics();
+        System.out.println("phase;count;meanNanos;p50Nanos;p99Nanos;maxNanos");
+        for (GridMetrics.Phase phase : GridMetrics.Phase.values()) {
+            LatencyHistogram latency = metrics.getLatency(phase);
+            System.out.println(phase + ";" + latency.getCount() + ";" + latency.getMean() + ";" + latency.getPercentile(50)
+                    + ";" + latency.getPercentile(99) + ";" + latency.getMax());
+        }
+        System.out.println("births;deaths;scentTiles;width;height");
+        System.out.println(metrics.getBirths() + ";" + metrics.getDeaths() + ";" + metrics.getScentTileCount()
+                + ";" + metrics.getMapWidth() + ";" + metrics.getMapHeight());
+        System.out.println("chunks;loaded;paged");
+        System.out.println("chunks;" + grid.getTiles().getChunks().size() + ";" + grid.getTiles().getPendingCount());
+        System.out.println("total;" + totalAntSteps + ";" + totalNanos + ";" + antStepsPerSecond(totalAntSteps, totalNanos));
+    }
+
+    /**
+     * Calculates the throughput of ant updates.
+     *
+     * @param antSteps Amount of ant updates, must be >= 0
+     * @param nanos    Time needed in nanoseconds, must be >= 0
+     * @return ant-steps per second, is >= 0
+     */
+    private static long antStepsPerSecond(long antSteps, long nanos) {
+        return nanos == 0 ? 0 : antSteps * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Starts a headless simulation.
+     *
+     * @param args Command-line arguments, all of them are optional.
+     *             args[0]: Amount of steps, default 400.
+     *             args[1]: Seed, default 42.
+     *             args[2]: Width of the grid, default 250.
+     *             args[3]: Height of the grid, default 200.
+     *             args[4]: Amount of threads, default all available processors.
+     *             args[5..8]: nestCounter, foodCounter, antsPerNest and obstacleCounter,
+     *             by default they are drawn from the seed.
+     *             If the system property "snapshot" names a file, the Grid is restored from it if it exists,
+     *             and saved into it after the last step. Then only args[0] and args[4] are used.
+     *             If the system property "paging" names a directory, idle chunks are moved into a file in it,
+     *             which is deleted at the end.
+     *             If the system property "sharded" is true, every thread updates the ants of its own region.
+     *             If the system property "diffusion" is set, scent spreads by this share per step (see Grid.setDiffusion).
+     * @throws IOException if the snapshot cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 250;
+        int height = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        int parallelism = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        GridOptions options = GridOptions.of(width, height, seed, parallelism);
+        if (args.length > 8) {
+            options = new GridOptions(width, height, seed, parallelism, Integer.parseInt(args[5]),
+                    Integer.parseInt(args[6]), Integer.parseInt(args[7]), Integer.parseInt(args[8]));
+        }
+
+        String snapshot = System.getProperty("snapshot");
+        Path path = snapshot == null ? null : Paths.get(snapshot);
+        Grid grid;
+        if (path != null && Files.exists(path)) {
+            System.out.println("restored from " + path);
+            grid = Snapshot.read(path, parallelism);
+        } else {
+            System.out.println(options);
+            grid = new Grid(options);
+        }
+
+        grid.setSharded(Boolean.getBoolean("sharded"));
+
+        String diffusion = System.getProperty("diffusion");
+        if (diffusion != null) {
+            grid.setDiffusion(Float.parseFloat(diffusion));
+        }
+
+        String paging = System.getProperty("paging");
+        if (paging != null) {
+            grid.enablePaging(Paths.get(paging));
+        }
+
+        try {
+            new HeadlessSimulation(grid, steps).start();
+            if (path != null) {
+                Snapshot.write(grid, path);
+            }
+        } finally {
+            grid.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+// Modularisierungseinheit: Klasse
+
+// Counts durations in buckets of powers of two, so recording is a few additions without any allocation.
+// Percentiles are only exact up to a factor of two, which is enough to see where the time of an update goes.
+// One thread records, any other thread may read at the same time.
+public class LatencyHistogram {
+    // bucket i counts durations in [2^(i-1); 2^i) nanoseconds, bucket 0 counts durations of 0
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Counts one duration.
+     *
+     * @param nanos Duration in nanoseconds, must be >= 0
+     */
+    public void record(long nanos) {
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        if (nanos > max.get()) {
+            max.set(nanos);
+        }
+    }
+
+    /**
+     * @return amount of recorded durations, is >= 0
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return sum of all recorded durations in nanoseconds, is >= 0
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return mean duration in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /**
+     * @return longest recorded duration in nanoseconds, is >= 0
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of a percentile, at most twice the exact value.
+     *
+     * @param percentile Percentile in (0; 100]
+     * @return duration in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < Long.SIZE; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < Long.SIZE; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+// Modularisierungseinheit: Klasse
+
+// Set of Tiles which can be sampled at random, e.g. the food sources a Nest knows.
+// The Tiles are stored in a list and a map knows the index of every Tile in it, so adding, checking,
+// removing and drawing a random Tile are all O(1). Removing moves the last Tile into the gap.
+// Tiles are compared by position (see Tile.equals).
+public class LocationSet {
+    private final List<Tile> locations = new ArrayList<>();
+    private final Map<Tile, Integer> indices = new HashMap<>();
+
+    /**
+     * Adds a Tile unless a Tile at the same position is already in the set.
+     *
+     * @param tile Tile to add, must be != null
+     * @return true if the Tile was added
+     */
+    public boolean add(Tile tile) {
+        if (indices.putIfAbsent(tile, locations.size()) != null) {
+            return false;
+        }
+        locations.add(tile);
+        return true;
+    }
+
+    /**
+     * @param tile Tile to check, must be != null
+     * @return true if a Tile at the same position is in the set
+     */
+    public boolean contains(Tile tile) {
+        return indices.containsKey(tile);
+    }
+
+    /**
+     * Removes the Tile at the position of a Tile. The last Tile of the list takes its index.
+     *
+     * @param tile Tile to remove, must be != null
+     * @return true if a Tile was removed
+     */
+    public boolean remove(Tile tile) {
+        Integer index = indices.remove(tile);
+        if (index == null) {
+            return false;
+        }
+        Tile last = locations.remove(locations.size() - 1);
+        if (index < locations.size()) {
+            locations.set(index, last);
+            indices.put(last, index);
+        }
+        return true;
+    }
+
+    /**
+     * Draws a Tile with equal probability. Only reads the set, so it may be called from
+     * several threads as long as nobody changes the set meanwhile.
+     *
+     * @param random Random stream to draw from, must be != null
+     * @return random Tile or null if the set is empty
+     */
+    public Tile random(RandomGenerator random) {
+        int size = locations.size();
+        if (size == 0) {
+            return null;
+        }
+        return locations.get((int) (random.nextDouble() * size));
+    }
+
+    /**
+     * @return amount of Tiles, is >= 0
+     */
+    public int size() {
+        return locations.size();
+    }
+
+    /**
+     * @return unmodifiable view of the Tiles in index order, is != null
+     */
+    public List<Tile> asList() {
+        return Collections.unmodifiableList(locations);
+    }
+}
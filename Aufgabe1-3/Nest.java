@@ -1,7 +1,7 @@
 import java.awt.*;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.random.RandomGenerator;
 // Modularisierungseinheit: Klasse
 // Eine Erweiterung der Tile-Klasse, die ein Untertyp von Entity ist.
 
@@ -10,11 +10,33 @@ public class Nest extends Tile {
     // color of the nest
     private final Color color;
 
-    // List of all relevant locations
-    private final LinkedList<Tile> knownLocations;
+    // color of the ants of this nest
+    private final Color antColor;
 
-    // List of Ants which belong to this nest
-    private final CopyOnWriteArrayList<Ant> ants = new CopyOnWriteArrayList<>();
+    // colors of the scent of this nest, one per alpha value, created on first use
+    private final Color[] scentColors = new Color[256];
+
+    // index of the scent layer of this nest
+    private final int index;
+
+    // food sources which the ants of this nest found and which still have food
+    private final LocationSet knownLocations = new LocationSet();
+
+    // Ants which belong to this nest in the order they were born, the first antSlots entries are used
+    // a dying Ant only leaves a hole (null), the holes are closed once at the end of commit,
+    // so births and deaths are O(1) and the order of the Ants never changes
+    private Ant[] ants = new Ant[16];
+    private int antSlots;
+    private volatile int antCount;
+    private boolean hasHoles;
+
+    // dead Ants which are reused for the next births, so births and deaths do not allocate
+    // births and deaths only happen in the sequential commit, so no synchronization is needed
+    private static final int MAX_DEAD_ANTS = 1024;
+    private final ArrayDeque<Ant> deadAnts = new ArrayDeque<>();
+
+    // index which knows the positions of all ants of the grid
+    private final AntIndex antIndex;
 
     // counter for retrieved food
     private int totalFarmedFood;
@@ -31,32 +53,77 @@ public class Nest extends Tile {
      * @param grid       Reference to Grid where the Nest lives. Must be != null
      */
     public Nest(Vector position, Color nestColor, int antsAmount, Grid grid) {
-        super(position);
-        this.color = nestColor;
-        this.knownLocations = new LinkedList<>();
-        this.totalAntsCreated = antsAmount;
+        this(position, nestColor, grid, antsAmount, 0);
         for (int i = 0; i < antsAmount; i++) {
-            ants.add(new Ant(grid, this, 100, position));
+            spawnAnt(new Ant(grid, this, 100, position, grid.getRandom().nextAntStream()));
         }
     }
 
+    /**
+     * Initializes a Nest without ants, e.g. from a Snapshot.
+     *
+     * @param position         Position where Nest is located. Must be != null
+     * @param nestColor        Color of the nest. Must be != null
+     * @param grid             Reference to Grid where the Nest lives. Must be != null
+     * @param totalAntsCreated Amount of ants which were created so far. Must be >= 0
+     * @param totalFarmedFood  Amount of food which was brought back so far. Must be >= 0
+     */
+    public Nest(Vector position, Color nestColor, Grid grid, int totalAntsCreated, int totalFarmedFood) {
+        super(position);
+        this.color = nestColor;
+        this.antColor = nestColor.darker();
+        this.index = grid.getScent().register(this);
+        this.antIndex = grid.getAntIndex();
+        this.totalAntsCreated = totalAntsCreated;
+        this.totalFarmedFood = totalFarmedFood;
+    }
+
 
     /**
+     * Returns a copy of the Ants of this Nest in the order they were born.
+     * Must not be called during an update.
+     *
      * @return List of Ants != null
      */
     public List<Ant> getAnts() {
-        return ants;
+        List<Ant> living = new ArrayList<>(antCount);
+        for (int i = 0; i < antSlots; i++) {
+            if (ants[i] != null) {
+                living.add(ants[i]);
+            }
+        }
+        return living;
+    }
+
+    /**
+     * Returns the amount of Ants of this Nest. May be called from any thread.
+     *
+     * @return amount of Ants, is >= 0
+     */
+    public int getAntCount() {
+        return antCount;
     }
 
     /**
      * Kills an Ant.
-     * It gets removed from the Ants list.
+     * It gets removed from the Ants list and is kept to be reused by the next birth.
      *
      * @param ant Ant, must be != null
      */
     public void killAnt(Ant ant) {
-        ants.remove(ant);
-        if (ants.isEmpty()) {
+        int slot = ant.getPopulationSlot();
+        if (slot >= 0 && ants[slot] == ant) {
+            ants[slot] = null;
+            ant.setPopulationSlot(-1);
+            hasHoles = true;
+            antCount--;
+            antIndex.remove(ant.getPosition());
+            ant.release();
+            if (deadAnts.size() < MAX_DEAD_ANTS) {
+                deadAnts.push(ant);
+            }
+        }
+        if (antCount == 0) {
             System.out.println("nest deleted");
         }
     }
@@ -67,10 +134,38 @@ public class Nest extends Tile {
      * @param ant Ant, must be != null
      */
     public void addAnt(Ant ant) {
-        ants.add(ant.copy());
+        Ant child = deadAnts.poll();
+        if (child == null) {
+            child = ant.copy();
+        } else {
+            child.reviveAsCopyOf(ant);
+        }
+        spawnAnt(child);
         totalAntsCreated++;
     }
 
+    /**
+     * Puts a new Ant into the Nest without counting it as created by the Nest.
+     *
+     * @param ant Ant, must be != null
+     */
+    public void spawnAnt(Ant ant) {
+        if (antSlots == ants.length) {
+            ants = Arrays.copyOf(ants, antSlots * 2);
+        }
+        ant.setPopulationSlot(antSlots);
+        ants[antSlots++] = ant;
+        antCount++;
+        antIndex.add(ant.getPosition());
+    }
+
+    /**
+     * @return index of the scent layer of this nest, is >= 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
     /**
      * Return nestColor.
      *
@@ -81,6 +176,31 @@ public class Nest extends Tile {
         return color;
     }
 
+    /**
+     * @return Color of the ants of this nest, is != null
+     */
+    public Color getAntColor() {
+        return antColor;
+    }
+
+    /**
+     * Returns the color of a tile with the given amount of scent of this nest.
+     * The colors are shared, so drawing does not create new Color objects.
+     *
+     * @param scent Amount of scent in [0;1]
+     * @return Color with the scent as alpha value, is != null
+     */
+    public Color getScentColor(float scent) {
+        int alpha = Math.max(0, Math.min(255, (int) (scent * 255)));
+        Color scentColor = scentColors[alpha];
+        if (scentColor == null) {
+            Color base = color.brighter();
+            scentColor = new Color(base.getRed(), base.getGreen(), base.getBlue(), alpha);
+            scentColors[alpha] = scentColor;
+        }
+        return scentColor;
+    }
+
     /**
      * Increases the counter for farmed food by one
      */
@@ -101,6 +221,16 @@ public class Nest extends Tile {
         return 100;
     }
 
+    /**
+     * The scent on a Nest does not decay.
+     *
+     * @return 1
+     */
+    @Override
+    public float getStinkDeletionRate() {
+        return 1f;
+    }
+
     /**
      * @return every food that is brought back to the nest
      */
@@ -109,14 +239,58 @@ public class Nest extends Tile {
     }
 
     /**
-     * Updates all Ants in the Nest.
+     * Checks if the Nest is still alive.
+     * The Ants of the Nest are updated by the Grid.
      *
      * @return true, if there are no Ants in the Nest.
      */
     @Override
     public boolean update() {
-        ants.forEach(Ant::update);
-        return ants.isEmpty();
+        return antCount == 0;
+    }
+
+    /**
+     * Adds the scent of every Ant of this Nest to the tiles they were standing on.
+     * All Ants of a Nest write to the same scent layer, so different Nests can do this in parallel.
+     */
+    public void depositScent() {
+        for (int i = 0; i < antSlots; i++) {
+            if (ants[i] != null) {
+                ants[i].leaveScent();
+            }
+        }
+    }
+
+    /**
+     * Applies the recorded changes of every Ant in the order of the Ants list.
+     * Ants which are born meanwhile are appended and committed in the next update.
+     * Afterwards the holes of the Ants which died are closed, keeping the order.
+     */
+    public void commit() {
+        int end = antSlots;
+        for (int i = 0; i < end; i++) {
+            Ant ant = ants[i];
+            if (ant != null) {
+                ant.commit();
+            }
+        }
+        if (hasHoles) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        int kept = 0;
+        for (int i = 0; i < antSlots; i++) {
+            Ant ant = ants[i];
+            if (ant != null) {
+                ant.setPopulationSlot(kept);
+                ants[kept++] = ant;
+            }
+        }
+        Arrays.fill(ants, kept, antSlots, null);
+        antSlots = kept;
+        hasHoles = false;
     }
 
     /**
@@ -138,15 +312,18 @@ public class Nest extends Tile {
     /**
      * Returns a random Location from knownLocations.
      *
+     * @param random Random stream to draw from, must be != null
      * @return random Tile from knownLocations. If there are no knownLocation, null is returned.
      */
-    public Tile getRandomLocation() {
-        int length = knownLocations.size();
-        if (length == 0) {
-            return null;
-        }
-        int index = (int) (Math.random() * length);
-        return knownLocations.get(index);
+    public Tile getRandomLocation(RandomGenerator random) {
+        return knownLocations.random(random);
+    }
+
+    /**
+     * @return unmodifiable view of all known locations in the order getRandomLocation draws from, is != null
+     */
+    public List<Tile> getKnownLocations() {
+        return knownLocations.asList();
     }
 
     /**
@@ -30,6 +30,26 @@ public class Obstacle extends Tile {
         return 100;
     }
 
+    /**
+     * The scent on a Obstacle does not decay.
+     *
+     * @return 1
+     */
+    @Override
+    public float getStinkDeletionRate() {
+        return 1f;
+    }
+
+    /**
+     * An Obstacle never changes.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
     /**
      * Return obstacleColor.
      *
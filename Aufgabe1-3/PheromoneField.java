@@ -0,0 +1,225 @@
+import java.util.Arrays;
+// Modularisierungseinheit: Klasse
+
+// Manages the scent of all nests.
+// Every nest gets a layer index, the values itself are stored as float arrays inside the chunks.
+// Decay is a plain multiplication over the arrays, so the JIT can vectorize it.
+// It reads the read buffer of a chunk and writes the write buffer, then both are swapped.
+// Optionally the scent also diffuses to the four neighbours of a cell. The stencil reads the read buffers of the
+// chunk and of its neighbours, so all chunks are diffused before any of them is swapped.
+public class PheromoneField {
+
+    // side of the padded block the stencil works on: a chunk with one cell of its neighbours around it
+    private static final int PADDED = Chunk.SIZE + 2;
+
+    // scent below this is dropped from empty cells after a diffusion, like Tiles below it are removed
+    private static final float MIN_SCENT = 0.05f;
+
+    // nest of each layer, a layer is never reused after its nest is gone
+    private volatile Nest[] nests = new Nest[0];
+
+    // arrays which are needed during the diffusion of a chunk, one per thread instead of one per chunk
+    private static final class Scratch {
+        private final float[] open = new float[PADDED * PADDED];
+        private final float[] values = new float[PADDED * PADDED];
+        // write buffer of each layer which was diffused, null for skipped layers
+        private float[][] written = new float[0][];
+    }
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Registers a nest and returns the index of its scent layer.
+     *
+     * @param nest Nest, must be != null
+     * @return layer index, is >= 0
+     */
+    public synchronized int register(Nest nest) {
+        Nest[] grown = Arrays.copyOf(nests, nests.length + 1);
+        grown[nests.length] = nest;
+        nests = grown;
+        return nests.length - 1;
+    }
+
+    /**
+     * @return amount of registered layers, is >= 0
+     */
+    public int getLayerCount() {
+        return nests.length;
+    }
+
+    /**
+     * @param layer Layer index, must be a registered index
+     * @return Nest which owns the layer, is != null
+     */
+    public Nest getNest(int layer) {
+        return nests[layer];
+    }
+
+    /**
+     * Decays every layer of a chunk by the decay rate of each cell.
+     *
+     * @param chunk Chunk, must be != null
+     */
+    public void decay(Chunk chunk) {
+        float[] rates = chunk.getDecayRates();
+        for (int layer = 0; layer < chunk.getLayerSlots(); layer++) {
+            float[] read = chunk.getLayer(layer);
+            if (read == null) {
+                continue;
+            }
+            float[] write = chunk.getWriteLayer(layer);
+            for (int cell = 0; cell < Chunk.CELLS; cell++) {
+                write[cell] = read[cell] * rates[cell];
+            }
+            chunk.swapLayer(layer);
+        }
+    }
+
+    /**
+     * Diffuses and decays every layer of a chunk into its write buffers, swap has to be called afterwards.
+     * Every open cell (see Chunk.isOpen) exchanges the given share of the difference to each open neighbour,
+     * then the decay rate of the cell is applied. Missing neighbour chunks are treated as closed.
+     * Empty cells which end up with less than MIN_SCENT in every layer lose their scent.
+     * Only reads the read buffers of the neighbours, so all chunks can be diffused in parallel.
+     *
+     * @param chunk     Chunk, must be != null
+     * @param left      Chunk at chunkX - 1 or null
+     * @param right     Chunk at chunkX + 1 or null
+     * @param below     Chunk at chunkY - 1 or null
+     * @param above     Chunk at chunkY + 1 or null
+     * @param diffusion Share in [0; 1] of the scent which spreads to the neighbours in one update
+     */
+    public void diffuse(Chunk chunk, Chunk left, Chunk right, Chunk below, Chunk above, float diffusion) {
+        // the chunk and its halo as one block, so the inner loop does not need to check the borders
+        Scratch scratch = this.scratch.get();
+        float[] open = scratch.open;
+        float[] values = scratch.values;
+        for (int y = 0; y < Chunk.SIZE; y++) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                open[padded(x, y)] = chunk.isOpen(y * Chunk.SIZE + x) ? 1f : 0f;
+            }
+        }
+        for (int i = 0; i < Chunk.SIZE; i++) {
+            open[padded(-1, i)] = left != null && left.isOpen(i * Chunk.SIZE + Chunk.MASK) ? 1f : 0f;
+            open[padded(Chunk.SIZE, i)] = right != null && right.isOpen(i * Chunk.SIZE) ? 1f : 0f;
+            open[padded(i, -1)] = below != null && below.isOpen(Chunk.MASK * Chunk.SIZE + i) ? 1f : 0f;
+            open[padded(i, Chunk.SIZE)] = above != null && above.isOpen(i) ? 1f : 0f;
+        }
+
+        float share = diffusion / 4;
+        float[] rates = chunk.getDecayRates();
+        int layers = getLayerCount();
+        if (scratch.written.length < layers) {
+            scratch.written = new float[layers][];
+        }
+        float[][] written = scratch.written;
+        Arrays.fill(written, 0, layers, null);
+        for (int layer = 0; layer < layers; layer++) {
+            float[] read = chunk.getLayer(layer);
+            float[] leftLayer = left == null ? null : left.getLayer(layer);
+            float[] rightLayer = right == null ? null : right.getLayer(layer);
+            float[] belowLayer = below == null ? null : below.getLayer(layer);
+            float[] aboveLayer = above == null ? null : above.getLayer(layer);
+            if (read == null) {
+                if (leftLayer == null && rightLayer == null && belowLayer == null && aboveLayer == null) {
+                    continue;
+                }
+                read = chunk.createLayer(layer);
+            }
+
+            for (int y = 0; y < Chunk.SIZE; y++) {
+                System.arraycopy(read, y * Chunk.SIZE, values, padded(0, y), Chunk.SIZE);
+            }
+            for (int i = 0; i < Chunk.SIZE; i++) {
+                values[padded(-1, i)] = leftLayer == null ? 0f : leftLayer[i * Chunk.SIZE + Chunk.MASK];
+                values[padded(Chunk.SIZE, i)] = rightLayer == null ? 0f : rightLayer[i * Chunk.SIZE];
+                values[padded(i, -1)] = belowLayer == null ? 0f : belowLayer[Chunk.MASK * Chunk.SIZE + i];
+                values[padded(i, Chunk.SIZE)] = aboveLayer == null ? 0f : aboveLayer[i];
+            }
+
+            float[] write = chunk.getWriteLayer(layer);
+            written[layer] = write;
+            for (int y = 0; y < Chunk.SIZE; y++) {
+                int row = padded(0, y);
+                for (int x = 0; x < Chunk.SIZE; x++) {
+                    int i = row + x;
+                    float center = values[i];
+                    float flow = open[i - 1] * (values[i - 1] - center) + open[i + 1] * (values[i + 1] - center)
+                            + open[i - PADDED] * (values[i - PADDED] - center) + open[i + PADDED] * (values[i + PADDED] - center);
+                    write[y * Chunk.SIZE + x] = (center + open[i] * share * flow) * rates[y * Chunk.SIZE + x];
+                }
+            }
+        }
+
+        for (int cell = 0; cell < Chunk.CELLS; cell++) {
+            if (chunk.get(cell) == null) {
+                dropWeakScent(written, layers, cell);
+            }
+        }
+    }
+
+    /**
+     * Swaps the read and the write buffer of every layer of a chunk after diffuse.
+     *
+     * @param chunk Chunk, must be != null
+     */
+    public void swap(Chunk chunk) {
+        for (int layer = 0; layer < chunk.getLayerSlots(); layer++) {
+            if (chunk.getLayer(layer) != null) {
+                chunk.swapLayer(layer);
+            }
+        }
+    }
+
+    /**
+     * Clears the diffused scent of an empty cell if it is below MIN_SCENT in every written layer.
+     */
+    private static void dropWeakScent(float[][] written, int layers, int cell) {
+        for (int layer = 0; layer < layers; layer++) {
+            if (written[layer] != null && written[layer][cell] > MIN_SCENT) {
+                return;
+            }
+        }
+        for (int layer = 0; layer < layers; layer++) {
+            if (written[layer] != null) {
+                written[layer][cell] = 0f;
+            }
+        }
+    }
+
+    /**
+     * @return index of a cell of the chunk in the padded block, x and y may be -1 or Chunk.SIZE for the halo
+     */
+    private static int padded(int x, int y) {
+        return (y + 1) * PADDED + x + 1;
+    }
+
+    /**
+     * Decays a chunk as often as if it had been updated the given amount of times.
+     * Used for chunks which were not in memory for some updates. Because the same multiplications are done,
+     * the result is exactly the same. Once no value changes anymore, the remaining decays are skipped.
+     *
+     * @param chunk Chunk, must be != null
+     * @param steps Amount of decays, must be >= 0
+     */
+    public void decay(Chunk chunk, long steps) {
+        float[] rates = chunk.getDecayRates();
+        for (int layer = 0; layer < chunk.getLayerSlots(); layer++) {
+            boolean changed = true;
+            for (long step = 0; step < steps && changed; step++) {
+                float[] read = chunk.getLayer(layer);
+                if (read == null) {
+                    break;
+                }
+                float[] write = chunk.getWriteLayer(layer);
+                changed = false;
+                for (int cell = 0; cell < Chunk.CELLS; cell++) {
+                    write[cell] = read[cell] * rates[cell];
+                    changed |= write[cell] != read[cell];
+                }
+                chunk.swapLayer(layer);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.random.RandomGenerator;
+// Modularisierungseinheit: Klasse
+
+// A SplitMix64 random stream, the same algorithm SplittableRandom uses.
+// In contrast to SplittableRandom, the state can be read and restored, so a running simulation can be saved.
+// A stream is not thread safe, every ant owns its own stream.
+public class RandomStream implements RandomGenerator {
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    /**
+     * Initializes a stream with the given state.
+     *
+     * @param state State, e.g. from getState()
+     */
+    public RandomStream(long state) {
+        this.state = state;
+    }
+
+    /**
+     * Mixes the bits of a value, so similar inputs give unrelated outputs.
+     *
+     * @param z Value to mix
+     * @return mixed value
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return the next pseudorandom long
+     */
+    @Override
+    public long nextLong() {
+        state += GAMMA;
+        return mix64(state);
+    }
+
+    /**
+     * @return current state, a stream created with this state continues identically
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Continues this stream like a stream created with the given state, e.g. to reuse it for another ant.
+     *
+     * @param state State, e.g. from getState()
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+}
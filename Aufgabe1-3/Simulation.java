@@ -1,8 +1,13 @@
 import codedraw.CodeDraw;
 import codedraw.EventScanner;
+import codedraw.Image;
+import codedraw.Interpolation;
 import codedraw.Key;
 
-import java.awt.*;
+import javax.management.JMException;
+import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 // Modularisierungseinheit: Klasse
 
@@ -12,10 +17,14 @@ public class Simulation {
     private final double initialCellSize;
     private final int updatesPerCircle;
     private final CodeDraw cd;
+    private final SimulationLoop loop;
     private final Grid grid;
+
+    // last frame of the loop and its image in the format of CodeDraw
+    private Frame frame;
+    private Image frameImage;
     private final EventScanner input;
     private Vector offset;
-    private int runtime = 400;
 
     /**
      * Initializes a Simulation.
@@ -23,9 +32,12 @@ public class Simulation {
      * @param cellSize         cellSize for Grid, must be > 0
      * @param maxX             width of Grid, must be > 0
      * @param maxY             height of Grid, must be > 0
-     * @param updatesPerCircle how many iterations are made before visual update, must be > 0
+     * @param updatesPerCircle minimum amount of updates between two visual updates, must be > 0
+     * @param runtime          how many circles are made before the window is closed, must be > 0.
+     *                         A circle is updatesPerCircle updates of the Grid, so the window closes after
+     *                         runtime * updatesPerCircle updates, no matter how many frames were shown.
      */
-    public Simulation(int cellSize, int maxX, int maxY, int updatesPerCircle) {
+    public Simulation(int cellSize, int maxX, int maxY, int updatesPerCircle, int runtime) {
         this.initialCellSize = cellSize;
         this.cellSize = cellSize;
         this.updatesPerCircle = updatesPerCircle;
@@ -34,6 +46,12 @@ public class Simulation {
         cd = new CodeDraw(maxX * cellSize, maxY * cellSize);
         cd.setAlwaysOnTop(true);
         grid = new Grid(maxX, maxY);
+        try {
+            grid.getMetrics().register("window");
+        } catch (JMException e) {
+            // the name is used by another window, this one runs without metrics over JMX
+        }
+        loop = new SimulationLoop(grid, updatesPerCircle, (long) runtime * updatesPerCircle);
 
         //movement
         input = cd.getEventScanner();
@@ -41,52 +59,79 @@ public class Simulation {
     }
 
     /**
-     * Runs one circle of the simulation.
-     * Multiple updates can happen in each circle
+     * Runs one circle of the window.
+     * The Grid is updated on its own thread, a circle only shows the newest frame of it.
+     * The window is closed when the loop made all of its updates.
      */
     // GOOD: prozeduale Programmierung: Kontrollfluss leicht erkennbar
-    // Hat eine enge Kopplung mit Grid
     private void run() {
         if (!cd.isClosed()) {
-            // STYLE: prozedulale Programmierung + objektorientierte Programmierung
-            // wir arbeiten immer am gleichen Grid Objekt aber verursachen den Programmfortschritt über Seiteneffekte.
-            // grid.update() triggert alle Entities und überarbeitet die Entities in der Map.
-            for (int i = 0; i < updatesPerCircle; i++) {
-                grid.update();
-            }
             handleKeyboardInput(input);
             drawWindow();
         }
-        if(runtime-- < 0) cd.close();
-        System.out.println(runtime);
+        if (loop.isFinished()) cd.close();
     }
 
     /**
-     * Handles the logic of drawing the entities on the window.
+     * Takes the newest frame of the loop, if there is one, and shows it.
+     * The frame is copied into an Image right away, so it can be given back to the loop.
      */
-    // GOOD: objektorientierte Programmierung:
-    // nutzt dynamisches Binden der Entities um die Farben und Positionen zu bekommen.
     private void drawWindow() {
+        Frame next = loop.takeFrame();
+        if (next != null) {
+            frame = next;
+            frameImage = new Image(next.getImage());
+            loop.recycle(next);
+        }
+        showFrame();
+    }
+
+    /**
+     * Shows the last frame with the current offset and cellSize.
+     * The whole frame is drawn as one scaled image, so moving and zooming does not need to rasterize the Grid again.
+     * The visible part of the world is passed to the loop, the next frames are only kept up to date there.
+     */
+    private void showFrame() {
+        int shiftX = offset.getX() + (int) ((cd.getWidth() / cellSize) / 2);
+        int shiftY = offset.getY() + (int) ((cd.getHeight() / cellSize) / 2);
+        loop.setView(-shiftX, -shiftY,
+                (int) Math.ceil(cd.getWidth() / cellSize) - shiftX, (int) Math.ceil(cd.getHeight() / cellSize) - shiftY);
+        if (frame == null) {
+            return;
+        }
         cd.setColor(Color.gray);
         cd.fillRectangle(0, 0, cd.getWidth(), cd.getHeight());
-        Vector actualVector = this.offset.add(new Vector((int) ((cd.getWidth() / cellSize) / 2), (int) ((cd.getHeight() / cellSize) / 2)));
-        grid.queue().forEach(entry -> {
-            Vector position = entry.getPosition().add(actualVector);
-            Color tileColor = entry.getColor();
-            cd.setColor(tileColor);
-            cd.fillRectangle(position.getX() * cellSize, position.getY() * cellSize, cellSize, cellSize);
-        });
-
-        cd.show();
+        cd.drawImage((frame.getOriginX() + shiftX) * cellSize, (frame.getOriginY() + shiftY) * cellSize,
+                frame.getWidth() * cellSize, frame.getHeight() * cellSize, frameImage, Interpolation.NEAREST_NEIGHBOR);
+        // about 60 frames per second
+        cd.show(16);
     }
 
     /**
-     * Starts the simulation.
+     * Starts the simulation. When the window is closed, the loop stops, the metrics leave JMX and the Grid is closed.
      */
     public void start() {
+        Thread thread = new Thread(loop, "simulation");
+        thread.setDaemon(true);
+        thread.start();
         while (!cd.isClosed()) {
             run();
         }
+        loop.stop();
+        try {
+            grid.getMetrics().unregister();
+        } catch (JMException e) {
+            // the window is closed anyway, the name only stays in use
+        }
+        try {
+            // the Grid must not be closed during an update
+            thread.join();
+            grid.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -116,15 +161,15 @@ public class Simulation {
                 case A, LEFT, NUMPAD4 -> x++;
                 case PLUS, ADD -> cellSize *= (double) 3 / 2;
                 case MINUS, SUBTRACT -> cellSize *= (double) 2 / 3;
-                case F -> grid.generateFoodSources();
-                case N -> grid.generateNests();
+                case F -> loop.submit(Grid::generateFoodSources);
+                case N -> loop.submit(Grid::generateNests);
                 case R -> {
                     offset = new Vector(0, 0);
                     cellSize = initialCellSize;
                 }
             }
             offset = offset.add(new Vector(x * offsetByStep, y * offsetByStep));
-            drawWindow();
+            showFrame();
         }
     }
 }
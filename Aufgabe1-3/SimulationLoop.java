@@ -0,0 +1,119 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+// Modularisierungseinheit: Klasse
+
+// Updates a Grid on its own thread as fast as possible.
+// Only this thread touches the Grid. Other threads see it through frames, which are handed over without locks:
+// a new frame is only rasterized after the last one was taken, so rendering never slows down the updates by more
+// than one rasterization per shown frame. Changes from other threads are queued as commands and run between two updates.
+public class SimulationLoop implements Runnable {
+    private final Grid grid;
+    private final FrameBuffer frameBuffer;
+    private final int updatesPerFrame;
+
+    // the loop stops by itself after this amount of updates
+    private final long maxUpdates;
+
+    // newest frame which was not taken yet
+    private final AtomicReference<Frame> latest = new AtomicReference<>();
+
+    // commands of other threads, e.g. from the keyboard
+    private final Queue<Consumer<Grid>> commands = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+    private volatile boolean finished;
+
+    /**
+     * Initializes a loop. It starts when run is called.
+     *
+     * @param grid            Grid, must be != null and must not be used by other threads
+     * @param updatesPerFrame Minimum amount of updates between two frames, must be > 0
+     * @param maxUpdates      Amount of updates after which the loop stops, must be > 0
+     */
+    public SimulationLoop(Grid grid, int updatesPerFrame, long maxUpdates) {
+        this.grid = grid;
+        this.frameBuffer = new FrameBuffer(grid);
+        this.updatesPerFrame = updatesPerFrame;
+        this.maxUpdates = maxUpdates;
+    }
+
+    /**
+     * Updates the Grid until stop is called or maxUpdates updates are done.
+     */
+    @Override
+    public void run() {
+        long step = 0;
+        long lastFrameStep = -updatesPerFrame;
+        while (running && step < maxUpdates) {
+            Consumer<Grid> command;
+            while ((command = commands.poll()) != null) {
+                command.accept(grid);
+            }
+
+            if (latest.get() == null && step - lastFrameStep >= updatesPerFrame) {
+                latest.set(frameBuffer.render(step));
+                lastFrameStep = step;
+            }
+
+            grid.update();
+            step++;
+        }
+        finished = true;
+    }
+
+    /**
+     * @return true if the loop made all of its updates or was stopped
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns the newest frame if there is one which was not taken yet.
+     * The caller owns the frame and should give it back with recycle when it is not needed anymore.
+     *
+     * @return Frame or null if there is no new frame
+     */
+    public Frame takeFrame() {
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * Gives back a frame which was taken before.
+     *
+     * @param frame Frame, must be != null
+     */
+    public void recycle(Frame frame) {
+        frameBuffer.recycle(frame);
+    }
+
+    /**
+     * Sets the part of the world the window shows, see FrameBuffer.setView. May be called from any thread.
+     *
+     * @param minX Smallest visible x coordinate
+     * @param minY Smallest visible y coordinate
+     * @param maxX Biggest visible x coordinate, must be >= minX
+     * @param maxY Biggest visible y coordinate, must be >= minY
+     */
+    public void setView(int minX, int minY, int maxX, int maxY) {
+        frameBuffer.setView(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Queues a change of the Grid. It runs on the thread of the loop before the next update.
+     *
+     * @param command Change, must be != null
+     */
+    public void submit(Consumer<Grid> command) {
+        commands.add(command);
+    }
+
+    /**
+     * Stops the loop after the current update.
+     */
+    public void stop() {
+        running = false;
+    }
+}
@@ -0,0 +1,129 @@
+// Modularisierungseinheit: Klasse
+
+// Source of every random decision of a Grid.
+// All streams are derived from one master seed and a key, e.g. the id of an ant or the area of a chunk.
+// Because a stream only depends on its key, it does not matter in which order or on which thread streams are created.
+public class SimulationRandom {
+    private static final long ANT = 1;
+    private static final long REGION = 2;
+    private static final long COMMAND = 3;
+    private static final long OPTIONS = 4;
+
+    private final long seed;
+
+    // counters for keys which are handed out in order, only used in sequential parts of the simulation
+    private long antCounter;
+    private long commandCounter;
+
+    /**
+     * Initializes the random source of a simulation.
+     *
+     * @param seed Master seed
+     */
+    public SimulationRandom(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Derives a stream from the master seed and the given keys.
+     *
+     * @param domain Kind of key, so keys of different kinds do not collide
+     * @param first  First key
+     * @param second Second key
+     * @return new RandomStream, is != null
+     */
+    private RandomStream derive(long domain, long first, long second) {
+        return new RandomStream(deriveState(domain, first, second));
+    }
+
+    private long deriveState(long domain, long first, long second) {
+        long state = RandomStream.mix64(seed ^ RandomStream.mix64(domain));
+        state = RandomStream.mix64(state ^ first);
+        return RandomStream.mix64(state ^ RandomStream.mix64(second));
+    }
+
+    /**
+     * Returns the stream of the next ant.
+     * Ants are created in the sequential parts of an update, so the ids are the same in every run.
+     *
+     * @return new RandomStream, is != null
+     */
+    public RandomStream nextAntStream() {
+        return derive(ANT, antCounter++, 0);
+    }
+
+    /**
+     * Returns the state of the stream of the next ant, like nextAntStream but without allocating.
+     *
+     * @return state for a RandomStream
+     */
+    public long nextAntState() {
+        return deriveState(ANT, antCounter++, 0);
+    }
+
+    /**
+     * Returns the stream for generating a rectangular area of the world.
+     * The same area always gets the same stream, no matter when it is generated.
+     *
+     * @param startPoint Start Point of the rectangle, must be != null
+     * @param endPoint   End Point of the rectangle, must be != null
+     * @return new RandomStream, is != null
+     */
+    public RandomStream regionStream(Vector startPoint, Vector endPoint) {
+        return derive(REGION, pack(startPoint), pack(endPoint));
+    }
+
+    /**
+     * Returns the stream for the next command of the user, e.g. generating new food sources.
+     *
+     * @return new RandomStream, is != null
+     */
+    public RandomStream nextCommandStream() {
+        return derive(COMMAND, commandCounter++, 0);
+    }
+
+    /**
+     * Returns the stream for choosing the default options of a Grid.
+     *
+     * @return new RandomStream, is != null
+     */
+    public RandomStream optionsStream() {
+        return derive(OPTIONS, 0, 0);
+    }
+
+    /**
+     * @return master seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return amount of ant streams which were handed out
+     */
+    public long getAntCounter() {
+        return antCounter;
+    }
+
+    /**
+     * @return amount of command streams which were handed out
+     */
+    public long getCommandCounter() {
+        return commandCounter;
+    }
+
+    /**
+     * Continues the numbering of streams of a saved simulation.
+     *
+     * @param antCounter     Amount of ant streams which were handed out, must be >= 0
+     * @param commandCounter Amount of command streams which were handed out, must be >= 0
+     */
+    public void restoreCounters(long antCounter, long commandCounter) {
+        this.antCounter = antCounter;
+        this.commandCounter = commandCounter;
+    }
+
+    private static long pack(Vector position) {
+        return ((long) position.getX() << 32) | (position.getY() & 0xffffffffL);
+    }
+}
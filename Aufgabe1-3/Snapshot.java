@@ -0,0 +1,272 @@
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+// Modularisierungseinheit: Klasse
+
+// Saves a running Grid into a binary file and restores it, so long runs can be continued later.
+// A restored Grid continues exactly like the saved one would have.
+//
+// Layout of a file:
+//   header: magic, version, seed, stream counters, step, diffusion, start point, end point
+//   nests:  one entry per scent layer (position, color, alive, counters, known locations)
+//   chunks: one block per chunk (lazy flag, obstacles and step of a lazy chunk, length, ChunkCodec block)
+//   ants:   per nest the amount of ants and the state of every ant
+//   flow:   state of the FlowFields, the fields are computed again from the stored obstacle masks
+//
+// Restoring maps the file into memory. Chunks which were marked as lazy are only decoded when the Grid
+// accesses them the first time. A chunk is lazy if it is far from every ant and contains only tiles which do not
+// change on their own (food sources and obstacles), so only its scent has to be decayed when it is loaded.
+// Pending chunks of the Grid are always lazy, their blocks are copied without loading them, so writing a
+// snapshot does not undo the paging.
+public final class Snapshot {
+    private static final int MAGIC = 0x414e5453; // "ANTS"
+    private static final int VERSION = 5;
+
+    // chunks closer than this to a chunk with ants are loaded immediately
+    private static final int LAZY_DISTANCE = 2;
+
+    // size of the write buffer besides the space needed for one chunk
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    // bytes of the lazy flag and of putLazy
+    private static final int LAZY_BYTES = 2 + Chunk.CELLS / Byte.SIZE + Long.BYTES;
+
+    private Snapshot() {
+    }
+
+    // lazy chunk of a restored Grid, decoded from the mapped file when the Grid accesses it
+    private record Lazy(ByteBuffer stored, long step, Grid grid) implements TileStorage.Pending {
+
+        @Override
+        public ByteBuffer block() {
+            return stored.duplicate();
+        }
+
+        @Override
+        public Chunk load() {
+            Chunk chunk = ChunkCodec.decode(block(), grid.getScent());
+            grid.getScent().decay(chunk, grid.getStep() - step);
+            return chunk;
+        }
+    }
+
+    /**
+     * Writes the Grid into a file. The file is first written next to the target and then moved,
+     * so an existing snapshot is never left half written.
+     * Must not be called while the Grid gets updated.
+     *
+     * @param grid Grid, must be != null
+     * @param path Target file, must be != null
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Grid grid, Path path) throws IOException {
+        TileStorage tiles = grid.getTiles();
+        PheromoneField field = grid.getScent();
+        List<Nest> alive = grid.getNests();
+        List<Chunk> chunks = tiles.getChunks();
+        List<TileStorage.Pending> pending = tiles.getPending();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES + ChunkCodec.maxBytes(field.getLayerCount()));
+
+            buffer.putInt(MAGIC).putInt(VERSION);
+            buffer.putLong(grid.getRandom().getSeed());
+            buffer.putLong(grid.getRandom().getAntCounter()).putLong(grid.getRandom().getCommandCounter());
+            buffer.putLong(grid.getStep());
+            buffer.putFloat(grid.getDiffusion());
+            putVector(buffer, grid.getStartPoint());
+            putVector(buffer, grid.getEndPoint());
+
+            buffer.putInt(field.getLayerCount());
+            for (int layer = 0; layer < field.getLayerCount(); layer++) {
+                Nest nest = field.getNest(layer);
+                ensure(channel, buffer, 6 * Integer.BYTES + 1);
+                putVector(buffer, nest.getPosition());
+                buffer.putInt(nest.getColor().getRGB());
+                buffer.put((byte) (alive.contains(nest) ? 1 : 0));
+                buffer.putInt(nest.getTotalAntsCreated()).putInt(nest.getTotalFarmedFood());
+                buffer.putInt(nest.getKnownLocations().size());
+                for (Tile location : nest.getKnownLocations()) {
+                    ensure(channel, buffer, 2 * Integer.BYTES);
+                    putVector(buffer, location.getPosition());
+                }
+            }
+
+            ensure(channel, buffer, Integer.BYTES);
+            buffer.putInt(chunks.size() + pending.size());
+            for (Chunk chunk : chunks) {
+                ensure(channel, buffer, LAZY_BYTES + Integer.BYTES + ChunkCodec.maxBytes(chunk.getLayerSlots()));
+                boolean lazy = grid.isIdle(chunk, LAZY_DISTANCE);
+                buffer.put((byte) (lazy ? 1 : 0));
+                if (lazy) {
+                    putLazy(buffer, chunk.getObstacles(), grid.getStep());
+                }
+                int lengthPosition = buffer.position();
+                buffer.putInt(0);
+                ChunkCodec.encode(chunk, buffer);
+                buffer.putInt(lengthPosition, buffer.position() - lengthPosition - Integer.BYTES);
+            }
+            for (TileStorage.Pending chunk : pending) {
+                ByteBuffer block = chunk.block();
+                ensure(channel, buffer, LAZY_BYTES + Integer.BYTES + block.remaining());
+                buffer.put((byte) 1);
+                putLazy(buffer, tiles.getObstacles(block.getInt(block.position()),
+                        block.getInt(block.position() + Integer.BYTES)), chunk.step());
+                buffer.putInt(block.remaining());
+                buffer.put(block);
+            }
+
+            for (int layer = 0; layer < field.getLayerCount(); layer++) {
+                List<Ant> ants = field.getNest(layer).getAnts();
+                ensure(channel, buffer, Integer.BYTES);
+                buffer.putInt(ants.size());
+                for (Ant ant : ants) {
+                    ensure(channel, buffer, Ant.STATE_BYTES);
+                    ant.writeState(buffer);
+                }
+            }
+            flush(channel, buffer);
+
+            // can be larger than the buffer, because it holds a bit per cell of the regions of the nests
+            ByteBuffer flow = ByteBuffer.allocate(grid.getFlowFields().bytes());
+            grid.getFlowFields().write(flow);
+            flow.flip();
+            while (flow.hasRemaining()) {
+                channel.write(flow);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores a Grid from a file which was written by write.
+     *
+     * @param path        File, must be != null
+     * @param parallelism Amount of threads used for the update, must be > 0
+     * @return restored Grid, is != null
+     * @throws IOException if the file cannot be read or is no snapshot
+     */
+    public static Grid read(Path path, int parallelism) throws IOException {
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (file.remaining() < 2 * Integer.BYTES || file.getInt() != MAGIC || file.getInt() != VERSION) {
+            throw new IOException("no snapshot of version " + VERSION + ": " + path);
+        }
+
+        long seed = file.getLong();
+        long antCounter = file.getLong();
+        long commandCounter = file.getLong();
+        long step = file.getLong();
+        float diffusion = file.getFloat();
+        Grid grid = new Grid(seed, parallelism, getVector(file), getVector(file), step);
+        grid.setDiffusion(diffusion);
+        grid.getRandom().restoreCounters(antCounter, commandCounter);
+        PheromoneField field = grid.getScent();
+        TileStorage tiles = grid.getTiles();
+
+        // every nest registers its layer again, in the same order
+        int layerCount = file.getInt();
+        List<Nest> alive = new ArrayList<>();
+        for (int layer = 0; layer < layerCount; layer++) {
+            Vector position = getVector(file);
+            Color color = new Color(file.getInt());
+            boolean isAlive = file.get() != 0;
+            Nest nest = new Nest(position, color, grid, file.getInt(), file.getInt());
+            int knownLocations = file.getInt();
+            for (int i = 0; i < knownLocations; i++) {
+                // known locations are only compared by position, so a detached FoodSource is enough
+                nest.addLocation(new FoodSource(getVector(file)));
+            }
+            if (isAlive) {
+                alive.add(nest);
+            }
+        }
+
+        int chunkCount = file.getInt();
+        for (int i = 0; i < chunkCount; i++) {
+            boolean lazy = file.get() != 0;
+            long[] obstacles = null;
+            long blockStep = step;
+            if (lazy) {
+                if (file.get() != 0) {
+                    obstacles = new long[Chunk.CELLS / Long.SIZE];
+                    for (int word = 0; word < obstacles.length; word++) {
+                        obstacles[word] = file.getLong();
+                    }
+                }
+                blockStep = file.getLong();
+            }
+            int length = file.getInt();
+            ByteBuffer block = file.slice(file.position(), length);
+            file.position(file.position() + length);
+            if (lazy) {
+                // the chunk missed every decay since its block was written
+                tiles.addPending(block.getInt(0), block.getInt(Integer.BYTES), new Lazy(block, blockStep, grid), obstacles);
+            } else {
+                tiles.addChunk(ChunkCodec.decode(block, field));
+            }
+        }
+        alive.forEach(grid::addNest);
+
+        for (int layer = 0; layer < layerCount; layer++) {
+            Nest nest = field.getNest(layer);
+            int ants = file.getInt();
+            for (int i = 0; i < ants; i++) {
+                nest.spawnAnt(new Ant(grid, nest, file));
+            }
+        }
+        grid.getFlowFields().read(file);
+        return grid;
+    }
+
+    /**
+     * Writes what a lazy chunk needs besides its block: the obstacles, which the FlowFields read without
+     * loading the chunk, and the step its block was written at.
+     */
+    private static void putLazy(ByteBuffer buffer, long[] obstacles, long blockStep) {
+        buffer.put((byte) (obstacles == null ? 0 : 1));
+        if (obstacles != null) {
+            for (long word : obstacles) {
+                buffer.putLong(word);
+            }
+        }
+        buffer.putLong(blockStep);
+    }
+
+    private static void putVector(ByteBuffer buffer, Vector vector) {
+        buffer.putInt(vector.getX()).putInt(vector.getY());
+    }
+
+    private static Vector getVector(ByteBuffer buffer) {
+        return new Vector(buffer.getInt(), buffer.getInt());
+    }
+
+    /**
+     * Writes the buffer to the channel if less than the given amount of bytes remain.
+     */
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
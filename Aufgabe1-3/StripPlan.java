@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+// Modularisierungseinheit: Klasse
+
+// Content of a strip at the border of a Grid which was generated without touching the Grid (see Generator.planStrip).
+// The tiles are grouped per chunk, so applying a plan only merges a few arrays into the TileStorage.
+// FoodSources which land on a cell that is already used in the Grid are drawn again from the stream of the strip
+// when the plan is applied, so every strip gets the same amount of food.
+public class StripPlan {
+    private final RandomGenerator random;
+    private final Vector startPoint;
+    private final Vector endPoint;
+
+    // planned FoodSources in the order they were drawn
+    private final List<FoodSource> food = new ArrayList<>();
+
+    // Tile per cell index of every chunk which gets tiles, in the order the chunks were first used
+    private final Map<Long, Tile[]> chunks = new LinkedHashMap<>();
+
+    /**
+     * Initializes an empty plan.
+     *
+     * @param random     Random stream of the strip, must be != null and must only be used by this plan afterwards
+     * @param startPoint Start Point of the strip, must be != null
+     * @param endPoint   End Point of the strip, must be != null
+     */
+    public StripPlan(RandomGenerator random, Vector startPoint, Vector endPoint) {
+        this.random = random;
+        this.startPoint = startPoint;
+        this.endPoint = endPoint;
+    }
+
+    /**
+     * Returns the planned Tile at a position.
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return Tile or null if nothing is planned there
+     */
+    public Tile get(int x, int y) {
+        Tile[] cells = chunks.get(pack(x >> Chunk.SHIFT, y >> Chunk.SHIFT));
+        return cells == null ? null : cells[Chunk.cellIndex(x, y)];
+    }
+
+    /**
+     * Plans a Tile at its position. A planned Tile at this position gets replaced.
+     *
+     * @param tile Tile, must be != null
+     */
+    public void put(Tile tile) {
+        int x = tile.getPosition().getX();
+        int y = tile.getPosition().getY();
+        chunks.computeIfAbsent(pack(x >> Chunk.SHIFT, y >> Chunk.SHIFT), key -> new Tile[Chunk.CELLS])[Chunk.cellIndex(x, y)] = tile;
+        if (tile instanceof FoodSource foodSource) {
+            food.add(foodSource);
+        }
+    }
+
+    /**
+     * Adds all planned Tiles to the storage, every chunk at once. Cells which are already used are kept.
+     * A FoodSource which was not added because of this is placed on a free cell of the strip instead.
+     * Must be called at most once.
+     *
+     * @param tiles TileStorage of the Grid, must be != null
+     */
+    public void apply(TileStorage tiles) {
+        chunks.forEach((key, cells) -> {
+            int chunkX = (int) (key >> 32);
+            int chunkY = (int) (long) key;
+            tiles.getOrCreateChunk(chunkX << Chunk.SHIFT, chunkY << Chunk.SHIFT).setAllIfAbsent(cells);
+        });
+        for (FoodSource foodSource : food) {
+            if (tiles.get(foodSource.getPosition().getX(), foodSource.getPosition().getY()) != foodSource) {
+                Generator.placeFoodSource(random, tiles, startPoint, endPoint);
+            }
+        }
+    }
+
+    private static long pack(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xffffffffL);
+    }
+}
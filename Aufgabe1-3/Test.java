@@ -17,10 +17,11 @@ public class Test {
         int maxX = 250;
         int maxY = 200;
         int updatesPerCircle = 1;
+        int runtime = 400;
 
         for (int i = 0; i < numberOfSims; i++) {
             try {
-                Simulation sim = new Simulation(cellSize, maxX, maxY, updatesPerCircle);
+                Simulation sim = new Simulation(cellSize, maxX, maxY, updatesPerCircle, runtime);
                 sim.start();
             } catch (RuntimeException e) {
                 System.out.println(e.getMessage());
@@ -1,7 +1,4 @@
 import java.awt.*;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 // Modularisierungseinheit: Klasse
 // Daten werden von Ants gekapselt und nur notwendige Daten sind von außen sichtar. (Data-Hiding)
@@ -11,10 +8,14 @@ import java.util.Objects;
 // it's heavily oop
 public class Tile implements Entity {
     private final Vector position;
-    private static final float stinkDeletionRate = 0.99f;
-    private final Map<Nest, Float> stinkMap = new HashMap<>();
+    // also used by Chunk for empty cells, into which scent can diffuse
+    static final float stinkDeletionRate = 0.99f;
     private final float antStink = .2f;
 
+    // the scent of this tile is stored in the layers of its chunk
+    private Chunk chunk;
+    private int cell;
+
     /**
      * Initializes a Tile at the given position.
      *
@@ -34,35 +35,63 @@ public class Tile implements Entity {
         return position;
     }
 
+    /**
+     * Connects the tile with the cell of the chunk it is stored in.
+     * Called by the chunk when the tile gets stored.
+     *
+     * @param chunk Chunk, must be != null
+     * @param cell  Cell index in the chunk
+     */
+    void attach(Chunk chunk, int cell) {
+        this.chunk = chunk;
+        this.cell = cell;
+    }
+
+    /**
+     * Returns the factor the scent on this tile is multiplied with in each update.
+     *
+     * @return factor in [0; 1]
+     */
+    public float getStinkDeletionRate() {
+        return stinkDeletionRate;
+    }
+
+    /**
+     * Checks if this tile never changes on its own, so the Grid does not have to update it.
+     * A plain Tile loses its scent and has to be removed at some point.
+     *
+     * @return false
+     */
+    public boolean isStatic() {
+        return false;
+    }
+
     /**
      * Returns the nest color with the highest scent.
-     * If there is no nest in the stinkMap, Color.Black is returned.
+     * If there is no scent on this tile, Color.Black is returned.
      *
      * @return Color, is != null
      */
     @Override
     public Color getColor() {
-        if (stinkMap.isEmpty()) {
+        int layer = chunk == null ? -1 : chunk.getStrongestLayer(cell);
+        if (layer < 0) {
             return Color.BLACK;
         }
         // should return the foodScent of the nest with the highest scent
-        Map.Entry<Nest, Float> pair = Collections.max(stinkMap.entrySet(), Map.Entry.comparingByValue());
-        Color base = pair.getKey().getColor().brighter();
-        return new Color(base.getRed(), base.getGreen(), base.getBlue(), (int) (pair.getValue() * 255));
+        return chunk.getField().getNest(layer).getScentColor(chunk.getScent(layer, cell));
     }
 
     /**
-     * Reduces every value in the stinkMap on this tile by stinkDeletionRate.
+     * Checks if the tile is still needed.
+     * The scent itself is decayed by the PheromoneField before.
      *
-     * @return true, if one value in the stinkMap is greater than 0.05f.
+     * @return true, if no scent on this tile is greater than 0.05f.
      */
     @Override
     public boolean update() {
-        // decrease stinks
-        stinkMap.replaceAll((nest, stink) -> stink * stinkDeletionRate);
-
-        // if there is a stink > 0.05f, we need to remove it from the map.
-        return stinkMap.entrySet().stream().noneMatch(entry -> entry.getValue() > 0.05f);
+        // if there is no stink > 0.05f, we need to remove it from the storage.
+        return getCurrentStink(null) <= 0.05f;
     }
 
     /**
@@ -74,18 +103,14 @@ public class Tile implements Entity {
      */
     public float getCurrentStink(Nest nest) {
         // we want to return the max stink for checking if there is a stink (needed in grid)
-        if (nest == null) {
-            if (stinkMap.isEmpty()) {
-                return 0f;
-            }
-            return Collections.max(stinkMap.entrySet(), Map.Entry.comparingByValue()).getValue();
-        }
-
-        Float currentStink = stinkMap.get(nest);
-        if (currentStink == null) {
+        if (chunk == null) {
             return 0f;
         }
-        return currentStink;
+        if (nest == null) {
+            int layer = chunk.getStrongestLayer(cell);
+            return layer < 0 ? 0f : chunk.getScent(layer, cell);
+        }
+        return chunk.getScent(nest.getIndex(), cell);
     }
 
     /**
@@ -95,39 +120,23 @@ public class Tile implements Entity {
      * @return returns float >=0f of smells from every other ant species
      */
     public float totalOtherSmell(Nest nest) {
-        float sum = 0;
-
-        for (Map.Entry<Nest, Float> entry : stinkMap.entrySet()) {
-            Nest key = entry.getKey();
-            Float value = entry.getValue();
-
-            // Check if the key is not equal to the key to exclude
-            if (!key.equals(nest)) {
-                // Add the value to the sum
-                sum += value;
-            }
+        if (chunk == null) {
+            return 0f;
         }
-        return sum;
+        return chunk.getOtherScent(nest.getIndex(), cell);
     }
 
     /**
      * Adds one antStink to the corresponding nest.
      * The maximal ant stink of a nest can be 1.
-     * Add the given nest to the stinkMap if it is not already there.
      *
      * @param nest Corresponding nest, must be != null
      */
     public void addStink(Nest nest) {
-        if (nest == null) {
+        if (nest == null || chunk == null) {
             return;
         }
-
-        Float currentStink = stinkMap.get(nest);
-        if (currentStink == null) {
-            currentStink = 0f;
-        }
-        currentStink = Math.min(currentStink + antStink * 3, 1);
-        stinkMap.put(nest, currentStink);
+        chunk.deposit(nest.getIndex(), cell, antStink * 3);
     }
 
     /**
@@ -0,0 +1,430 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+// Modularisierungseinheit: Klasse
+
+// Stores the tiles of a Grid in square chunks which are addressed by integer (x, y) coordinates.
+// The chunks are kept in a dense directory which covers the bounding box of all chunks.
+// Lookups are a shift, a mask and two array accesses - no key objects get allocated.
+// Chunks can also be pending: they exist as a ChunkCodec block, but are only loaded when they are accessed
+// the first time.
+public class TileStorage {
+
+    // the directory gets replaced as a whole when it grows, so readers always see a consistent version
+    private volatile Directory directory = new Directory(0, 0, 0, 0);
+
+    // all chunks in creation order, used for iteration
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    // every chunk stores the scent layers of this field
+    private final PheromoneField field;
+
+    // chunks which are not in memory yet, keyed by their packed chunk coordinates
+    private final Map<Long, Pending> pending = new HashMap<>();
+    private volatile boolean hasPending;
+
+    // obstacle masks of pending chunks which are known without loading them, see getObstacles
+    private final Map<Long, long[]> pendingObstacles = new HashMap<>();
+
+    /**
+     * A chunk which is not in memory, but stored as a ChunkCodec block, e.g. in a spill file or a Snapshot.
+     */
+    public interface Pending {
+
+        /**
+         * Returns the block of the chunk without loading it, so it can be stored somewhere else.
+         * The chunk is still pending afterwards.
+         *
+         * @return buffer which contains exactly the block, is != null
+         */
+        ByteBuffer block();
+
+        /**
+         * @return step of the Grid when the block was written, the scent has to decay since then
+         */
+        long step();
+
+        /**
+         * Creates the chunk with the decays it missed since step. Is called at most once, while holding
+         * the lock of the storage.
+         *
+         * @return chunk with the coordinates of the block, is != null
+         */
+        Chunk load();
+    }
+
+    // immutable view on the chunk directory, row-major
+    private static final class Directory {
+        private final int originX;
+        private final int originY;
+        private final int width;
+        private final int height;
+        private final Chunk[] chunks;
+
+        private Directory(int originX, int originY, int width, int height) {
+            this.originX = originX;
+            this.originY = originY;
+            this.width = width;
+            this.height = height;
+            this.chunks = new Chunk[width * height];
+        }
+
+        private Chunk get(int chunkX, int chunkY) {
+            int dx = chunkX - originX;
+            int dy = chunkY - originY;
+            if (dx < 0 || dy < 0 || dx >= width || dy >= height) {
+                return null;
+            }
+            return chunks[dy * width + dx];
+        }
+
+        private boolean covers(int minChunkX, int minChunkY, int maxChunkX, int maxChunkY) {
+            return minChunkX >= originX && minChunkY >= originY
+                    && maxChunkX < originX + width && maxChunkY < originY + height;
+        }
+    }
+
+    /**
+     * Initializes an empty storage.
+     *
+     * @param field PheromoneField for the scent layers of the chunks, must be != null
+     */
+    public TileStorage(PheromoneField field) {
+        this.field = field;
+    }
+
+    /**
+     * Returns the Tile at the given position.
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return Tile or null if there is no Tile at this position
+     */
+    public Tile get(int x, int y) {
+        Chunk chunk = getChunk(x, y);
+        if (chunk == null) {
+            return null;
+        }
+        return chunk.get(Chunk.cellIndex(x, y));
+    }
+
+    /**
+     * Returns the chunk which contains the given position.
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return Chunk or null if no Tile was ever stored in this chunk
+     */
+    public Chunk getChunk(int x, int y) {
+        Chunk chunk = directory.get(x >> Chunk.SHIFT, y >> Chunk.SHIFT);
+        if (chunk == null && hasPending) {
+            synchronized (this) {
+                chunk = loadPending(x >> Chunk.SHIFT, y >> Chunk.SHIFT);
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns the chunk which contains the given position, but does not load it if it is pending.
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return Chunk or null if there is no loaded chunk at this position
+     */
+    public Chunk getLoadedChunk(int x, int y) {
+        return directory.get(x >> Chunk.SHIFT, y >> Chunk.SHIFT);
+    }
+
+    /**
+     * Returns the chunk which contains the given position and allocates it if needed.
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return Chunk, is != null
+     */
+    public Chunk getOrCreateChunk(int x, int y) {
+        return chunkFor(x, y);
+    }
+
+    /**
+     * Stores a Tile at its position. An existing Tile at this position gets replaced.
+     *
+     * @param tile Tile, must be != null
+     */
+    public void put(Tile tile) {
+        int x = tile.getPosition().getX();
+        int y = tile.getPosition().getY();
+        chunkFor(x, y).set(Chunk.cellIndex(x, y), tile);
+    }
+
+    /**
+     * Stores a Tile at its position if there is no Tile yet.
+     *
+     * @param tile Tile, must be != null
+     * @return the Tile which is stored at the position afterwards, is != null
+     */
+    public Tile putIfAbsent(Tile tile) {
+        int x = tile.getPosition().getX();
+        int y = tile.getPosition().getY();
+        return chunkFor(x, y).setIfAbsent(Chunk.cellIndex(x, y), tile);
+    }
+
+    /**
+     * Returns the Tile at the given position and stores a plain Tile there if there is none yet.
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return the Tile which is stored at the position afterwards, is != null
+     */
+    public Tile getOrCreate(int x, int y) {
+        return chunkFor(x, y).getOrCreate(Chunk.cellIndex(x, y));
+    }
+
+    /**
+     * Removes the Tile at the given position. Has no effect if there is no Tile.
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     */
+    public void remove(int x, int y) {
+        Chunk chunk = getChunk(x, y);
+        if (chunk != null) {
+            chunk.clear(Chunk.cellIndex(x, y));
+        }
+    }
+
+    /**
+     * Makes sure that the directory covers the given rectangle, so later inserts do not need to grow it.
+     * Called whenever the Grid gets extended.
+     *
+     * @param startPoint Lower left corner, must be != null
+     * @param endPoint   Upper right corner, must be != null
+     */
+    public synchronized void reserve(Vector startPoint, Vector endPoint) {
+        grow(startPoint.getX() >> Chunk.SHIFT, startPoint.getY() >> Chunk.SHIFT,
+                endPoint.getX() >> Chunk.SHIFT, endPoint.getY() >> Chunk.SHIFT);
+    }
+
+    /**
+     * Registers a chunk which is loaded when it is accessed the first time.
+     *
+     * @param chunkX    X coordinate of the chunk
+     * @param chunkY    Y coordinate of the chunk
+     * @param chunk     Block of the chunk, must be != null and must contain a chunk with the given coordinates
+     * @param obstacles Obstacle mask of the chunk (see Chunk.getObstacles), null if it has no obstacles
+     */
+    public synchronized void addPending(int chunkX, int chunkY, Pending chunk, long[] obstacles) {
+        pending.put(pack(chunkX, chunkY), chunk);
+        hasPending = true;
+        if (obstacles != null) {
+            pendingObstacles.put(pack(chunkX, chunkY), obstacles);
+        }
+    }
+
+    /**
+     * Returns all pending chunks without loading them.
+     *
+     * @return List of pending chunks, is != null
+     */
+    public synchronized List<Pending> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Returns the obstacles of a chunk without loading it. A pending chunk has the same mask as when it is loaded.
+     *
+     * @param chunkX X coordinate of the chunk
+     * @param chunkY Y coordinate of the chunk
+     * @return obstacle mask (see Chunk.getObstacles) or null if there are no known obstacles
+     */
+    public synchronized long[] getObstacles(int chunkX, int chunkY) {
+        Chunk chunk = directory.get(chunkX, chunkY);
+        return chunk != null ? chunk.getObstacles() : pendingObstacles.get(pack(chunkX, chunkY));
+    }
+
+    /**
+     * Adds a complete chunk, e.g. from a Snapshot. Has no effect if there is already a chunk at its position.
+     *
+     * @param chunk Chunk, must be != null
+     */
+    public synchronized void addChunk(Chunk chunk) {
+        install(chunk);
+    }
+
+    /**
+     * Removes a loaded chunk from memory and makes it pending, so it is loaded again when it is accessed.
+     * Must not be called while other threads access the storage.
+     *
+     * @param chunk  Loaded chunk, must be != null
+     * @param stored Block of the chunk, must be != null
+     */
+    public synchronized void unload(Chunk chunk, Pending stored) {
+        Directory current = directory;
+        int index = (chunk.getChunkY() - current.originY) * current.width + (chunk.getChunkX() - current.originX);
+        current.chunks[index] = null;
+        chunks.remove(chunk);
+        addPending(chunk.getChunkX(), chunk.getChunkY(), stored, chunk.getObstacles());
+    }
+
+    /**
+     * Loads the pending chunks among a chunk and its 8 neighbours, so code which only reads loaded chunks
+     * sees all cells within one cell of the chunk. Has no effect if nothing is pending.
+     *
+     * @param chunk Loaded chunk, must be != null
+     */
+    public synchronized void loadAround(Chunk chunk) {
+        for (int dy = -1; dy <= 1 && hasPending; dy++) {
+            for (int dx = -1; dx <= 1 && hasPending; dx++) {
+                loadPending(chunk.getChunkX() + dx, chunk.getChunkY() + dy);
+            }
+        }
+    }
+
+    /**
+     * Loads every pending chunk.
+     */
+    public synchronized void loadAll() {
+        for (Long key : new ArrayList<>(pending.keySet())) {
+            loadPending((int) (key >> 32), (int) (long) key);
+        }
+    }
+
+    /**
+     * @return amount of chunks which are not loaded yet, is >= 0
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Returns a snapshot of all loaded chunks in creation order.
+     *
+     * @return List of chunks, is != null
+     */
+    public synchronized List<Chunk> getChunks() {
+        return new ArrayList<>(chunks);
+    }
+
+    /**
+     * Calls the given action for every stored Tile.
+     *
+     * @param action Action, must be != null
+     */
+    public void forEach(Consumer<Tile> action) {
+        for (Chunk chunk : getChunks()) {
+            for (int cell = 0; cell < Chunk.CELLS; cell++) {
+                Tile tile = chunk.get(cell);
+                if (tile != null) {
+                    action.accept(tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return amount of stored Tiles, is >= 0
+     */
+    public int size() {
+        int size = 0;
+        for (Chunk chunk : getChunks()) {
+            size += chunk.getTileCount();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the chunk for a position and allocates it if needed.
+     */
+    private Chunk chunkFor(int x, int y) {
+        int chunkX = x >> Chunk.SHIFT;
+        int chunkY = y >> Chunk.SHIFT;
+        Chunk chunk = directory.get(chunkX, chunkY);
+        if (chunk != null) {
+            return chunk;
+        }
+
+        synchronized (this) {
+            chunk = loadPending(chunkX, chunkY);
+            if (chunk == null) {
+                chunk = install(new Chunk(chunkX, chunkY, field));
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Returns the chunk at the given chunk coordinates, loads it if it is pending.
+     * Must be called while holding the lock of this storage.
+     *
+     * @return Chunk or null if there is neither a loaded nor a pending chunk
+     */
+    private Chunk loadPending(int chunkX, int chunkY) {
+        Chunk chunk = directory.get(chunkX, chunkY);
+        if (chunk != null || !hasPending) {
+            return chunk;
+        }
+        Pending stored = pending.remove(pack(chunkX, chunkY));
+        pendingObstacles.remove(pack(chunkX, chunkY));
+        hasPending = !pending.isEmpty();
+        return stored == null ? null : install(stored.load());
+    }
+
+    /**
+     * Puts a chunk into the directory, unless there is already one at its position.
+     * Must be called while holding the lock of this storage.
+     *
+     * @return the chunk which is in the directory afterwards, is != null
+     */
+    private Chunk install(Chunk chunk) {
+        grow(chunk.getChunkX(), chunk.getChunkY(), chunk.getChunkX(), chunk.getChunkY());
+        Directory current = directory;
+        int index = (chunk.getChunkY() - current.originY) * current.width + (chunk.getChunkX() - current.originX);
+        if (current.chunks[index] == null) {
+            current.chunks[index] = chunk;
+            chunks.add(chunk);
+        }
+        return current.chunks[index];
+    }
+
+    private static long pack(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xffffffffL);
+    }
+
+    /**
+     * Replaces the directory with a bigger one if it does not cover the given chunk rectangle.
+     * Every side that grows gets half of the current size as slack, so growing is amortized O(1).
+     * Must be called while holding the lock of this storage.
+     */
+    private void grow(int minChunkX, int minChunkY, int maxChunkX, int maxChunkY) {
+        Directory current = directory;
+        if (current.covers(minChunkX, minChunkY, maxChunkX, maxChunkY)) {
+            return;
+        }
+
+        int originX = minChunkX, originY = minChunkY, endX = maxChunkX, endY = maxChunkY;
+        if (current.width > 0) {
+            originX = Math.min(originX, current.originX);
+            originY = Math.min(originY, current.originY);
+            endX = Math.max(endX, current.originX + current.width - 1);
+            endY = Math.max(endY, current.originY + current.height - 1);
+
+            // add slack on the sides which grow
+            if (originX < current.originX) originX -= current.width / 2;
+            if (endX >= current.originX + current.width) endX += current.width / 2;
+            if (originY < current.originY) originY -= current.height / 2;
+            if (endY >= current.originY + current.height) endY += current.height / 2;
+        }
+
+        Directory grown = new Directory(originX, originY, endX - originX + 1, endY - originY + 1);
+        for (int y = 0; y < current.height; y++) {
+            System.arraycopy(current.chunks, y * current.width,
+                    grown.chunks, (current.originY + y - originY) * grown.width + (current.originX - originX),
+                    current.width);
+        }
+        directory = grown;
+    }
+}
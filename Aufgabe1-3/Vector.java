@@ -2,6 +2,7 @@
 // genutzt für die Datenkapselung der Position
 
 import java.util.Objects;
+import java.util.random.RandomGenerator;
 
 // class that represents vectors - vectors are used for positions and directions
 // the programm paradigma is a mix between oop and many static functions acting via functional programming
@@ -96,14 +97,15 @@ public class Vector {
     /**
      * Creates a random direction Vector that will always point somewhere
      *
+     * @param random Random stream to draw from, must be != null
      * @return Random direction Vector, which is != null
      */
-    public static Vector RandomDirection() {
+    public static Vector RandomDirection(RandomGenerator random) {
         int x = 0;
         int y = 0;
         while (x == 0 && y == 0) {
-            x = (int) Math.round(Math.random() * 2 - 1);
-            y = (int) Math.round(Math.random() * 2 - 1);
+            x = (int) Math.round(random.nextDouble() * 2 - 1);
+            y = (int) Math.round(random.nextDouble() * 2 - 1);
         }
         return new Vector(x, y);
     }
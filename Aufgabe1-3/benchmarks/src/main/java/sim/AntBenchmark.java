@@ -0,0 +1,131 @@
+package sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// measures the decision of a single ant, the ants of an evolved world are used in turn, and of all ants at once
+// the ants are reset to the evolved state after every move, because the benchmark does not commit the moves:
+// without commit the AntIndex gets stale, no ant dies and the ants walk out of the generated world
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AntBenchmark {
+    private AntTable ants;
+    private final Ant.Scratch scratch = new Ant.Scratch();
+    private int next;
+
+    // columns of the evolved table
+    private SavedAnts saved;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Grid grid = new Grid(new GridOptions(250, 200, 42, 1, 5, 30, 500, 10));
+        for (int i = 0; i < 50; i++) {
+            grid.update();
+        }
+        ants = grid.getAntTable();
+        saved = new SavedAnts(ants);
+    }
+
+    private int nextSlot() {
+        int slot = next;
+        next = next + 1 == ants.size() ? 0 : next + 1;
+        return slot;
+    }
+
+    @Benchmark
+    public Ant.Scratch updateAvailableNeighbours() {
+        Ant.updateAvailableNeighbours(ants, nextSlot(), scratch);
+        return scratch;
+    }
+
+    /**
+     * Finds the neighbours of the ant first, like the update does. makeMove only changes the position
+     * and the heading of the ant, they are set back afterwards.
+     */
+    @Benchmark
+    public Ant.Scratch makeMove() {
+        int slot = nextSlot();
+        Ant.updateAvailableNeighbours(ants, slot, scratch);
+        Ant.makeMove(ants, slot, scratch);
+        ants.x[slot] = saved.x[slot];
+        ants.y[slot] = saved.y[slot];
+        ants.heading[slot] = saved.heading[slot];
+        return scratch;
+    }
+
+    /**
+     * Updates all ants of the table in slot order on one thread, always starting from the evolved state.
+     * Compare with restore to get the cost of the update alone.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public AntTable updateAll() {
+        saved.restore(ants);
+        ants.update(0, ants.size());
+        return ants;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public AntTable restore() {
+        saved.restore(ants);
+        return ants;
+    }
+
+    // copy of every column an update of the ants writes
+    private static final class SavedAnts {
+        private final int size;
+        private final int[] x, y, heading, lifetime, currentLifetime, totalLifetime, targetX, targetY, previousX, previousY;
+        private final byte[] state, targetKind;
+        private final long[] random;
+        private final boolean[] updated, delivered, dead;
+        private final FoodSource[] consumedFood;
+
+        private SavedAnts(AntTable t) {
+            size = t.size();
+            x = Arrays.copyOf(t.x, size);
+            y = Arrays.copyOf(t.y, size);
+            heading = Arrays.copyOf(t.heading, size);
+            lifetime = Arrays.copyOf(t.lifetime, size);
+            currentLifetime = Arrays.copyOf(t.currentLifetime, size);
+            totalLifetime = Arrays.copyOf(t.totalLifetime, size);
+            targetX = Arrays.copyOf(t.targetX, size);
+            targetY = Arrays.copyOf(t.targetY, size);
+            previousX = Arrays.copyOf(t.previousX, size);
+            previousY = Arrays.copyOf(t.previousY, size);
+            state = Arrays.copyOf(t.state, size);
+            targetKind = Arrays.copyOf(t.targetKind, size);
+            random = Arrays.copyOf(t.random, size);
+            updated = Arrays.copyOf(t.updated, size);
+            delivered = Arrays.copyOf(t.delivered, size);
+            dead = Arrays.copyOf(t.dead, size);
+            consumedFood = Arrays.copyOf(t.consumedFood, size);
+        }
+
+        private void restore(AntTable t) {
+            System.arraycopy(x, 0, t.x, 0, size);
+            System.arraycopy(y, 0, t.y, 0, size);
+            System.arraycopy(heading, 0, t.heading, 0, size);
+            System.arraycopy(lifetime, 0, t.lifetime, 0, size);
+            System.arraycopy(currentLifetime, 0, t.currentLifetime, 0, size);
+            System.arraycopy(totalLifetime, 0, t.totalLifetime, 0, size);
+            System.arraycopy(targetX, 0, t.targetX, 0, size);
+            System.arraycopy(targetY, 0, t.targetY, 0, size);
+            System.arraycopy(previousX, 0, t.previousX, 0, size);
+            System.arraycopy(previousY, 0, t.previousY, 0, size);
+            System.arraycopy(state, 0, t.state, 0, size);
+            System.arraycopy(targetKind, 0, t.targetKind, 0, size);
+            System.arraycopy(random, 0, t.random, 0, size);
+            System.arraycopy(updated, 0, t.updated, 0, size);
+            System.arraycopy(delivered, 0, t.delivered, 0, size);
+            System.arraycopy(dead, 0, t.dead, 0, size);
+            System.arraycopy(consumedFood, 0, t.consumedFood, 0, size);
+        }
+    }
+}
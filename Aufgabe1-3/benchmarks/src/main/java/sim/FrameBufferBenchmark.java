@@ -0,0 +1,60 @@
+package sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// measures rasterizing a world into the frame buffer, a frame at 60 fps has about 16 ms
+// first is the first frame of a whole world, changes is an update plus the frame of its changes,
+// compare it with update to get the cost of the frame
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBufferBenchmark {
+    @Param({"250", "1000"})
+    private int size;
+
+    private Grid grid;
+    private FrameBuffer frameBuffer;
+
+    /**
+     * Every iteration starts with the same evolved world and a frame of it, like a window which is already open.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        grid = new Grid(new GridOptions(size, size, 42, 1, 5, 30, 500, 10));
+        for (int i = 0; i < 50; i++) {
+            grid.update();
+        }
+        frameBuffer = new FrameBuffer(grid);
+        frameBuffer.recycle(frameBuffer.render(grid.getStep()));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        grid.close();
+    }
+
+    @Benchmark
+    public Object first() {
+        return new FrameBuffer(grid).render(grid.getStep());
+    }
+
+    @Benchmark
+    public Object update() {
+        grid.update();
+        return grid;
+    }
+
+    @Benchmark
+    public Object changes() {
+        grid.update();
+        Frame frame = frameBuffer.render(grid.getStep());
+        frameBuffer.recycle(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,42 @@
+package sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// measures the generation of the initial world and of a border strip like in Grid.generateNewChunks
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+    private Grid grid;
+
+    /**
+     * Every generation needs an empty world, otherwise the retry loops get longer and longer.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() {
+        grid = new Grid(new GridOptions(250, 200, 42, 1, 0, 0, 0, 0));
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        grid.close();
+    }
+
+    @Benchmark
+    public Grid initialWorld() {
+        new Generator(grid, grid.getRandom().nextCommandStream(), 5, 30, 500, 10).generateTilesForChunk(new Vector(-125, -100), new Vector(125, 100));
+        return grid;
+    }
+
+    @Benchmark
+    public Grid borderStrip() {
+        new Generator(grid, grid.getRandom().nextCommandStream(), 0, 7, 0, 2).generateTilesForChunk(new Vector(125, -100), new Vector(145, 100));
+        return grid;
+    }
+}
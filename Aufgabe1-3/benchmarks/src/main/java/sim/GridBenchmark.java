@@ -0,0 +1,55 @@
+package sim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// measures a whole update of the Grid for different world sizes and amounts of ants
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GridBenchmark {
+
+    @Param({"100x80", "250x200", "500x400"})
+    public String size;
+
+    @Param({"100", "500", "2000"})
+    public int antsPerNest;
+
+    // 0 means all available processors
+    @Param({"0"})
+    public int parallelism;
+
+    // true splits the ants into regions, one per thread
+    @Param({"false", "true"})
+    public boolean sharded;
+
+    private Grid grid;
+
+    /**
+     * Every iteration starts with a fresh world, so the iterations are comparable.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        String[] dimensions = size.split("x");
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        grid = new Grid(new GridOptions(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]),
+                42, threads, 5, 30, antsPerNest, 10));
+        grid.setSharded(sharded);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        grid.close();
+    }
+
+    @Benchmark
+    public Grid update() {
+        grid.update();
+        return grid;
+    }
+}
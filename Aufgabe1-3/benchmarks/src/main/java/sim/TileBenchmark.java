@@ -0,0 +1,73 @@
+package sim;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// measures the scent decay and the tile updates of all chunks of an evolved world
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileBenchmark {
+    private Grid grid;
+    private List<Chunk> chunks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        grid = new Grid(new GridOptions(250, 200, 42, 1, 5, 30, 500, 10));
+        for (int i = 0; i < 100; i++) {
+            grid.update();
+        }
+        chunks = grid.getTiles().getChunks();
+    }
+
+    // decays per invocation, the scent stays far above the denormalized range (0.5 * 0.99^100 > 0.1)
+    private static final int DECAYS = 100;
+
+    /**
+     * Refills the scent, otherwise it would decay into denormalized floats which are much slower.
+     */
+    @Setup(Level.Iteration)
+    public void refill() {
+        for (Chunk chunk : chunks) {
+            for (int layer = 0; layer < chunk.getLayerSlots(); layer++) {
+                float[] values = chunk.getLayer(layer);
+                if (values != null) {
+                    Arrays.fill(values, 0.5f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Refills the scent and decays it DECAYS times, the result is per decay.
+     */
+    @Benchmark
+    @OperationsPerInvocation(DECAYS)
+    public void decay() {
+        refill();
+        for (int i = 0; i < DECAYS; i++) {
+            for (Chunk chunk : chunks) {
+                grid.getScent().decay(chunk);
+            }
+        }
+    }
+
+    @Benchmark
+    public void update(Blackhole blackhole) {
+        for (Chunk chunk : chunks) {
+            for (int cell = 0; cell < Chunk.CELLS; cell++) {
+                Tile tile = chunk.get(cell);
+                if (tile != null) {
+                    blackhole.consume(tile.update());
+                }
+            }
+        }
+    }
+}